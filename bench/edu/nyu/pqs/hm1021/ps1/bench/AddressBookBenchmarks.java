@@ -0,0 +1,286 @@
+package edu.nyu.pqs.hm1021.ps1.bench;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import edu.nyu.pqs.hm1021.ps1.AddressBook;
+import edu.nyu.pqs.hm1021.ps1.ColumnarAddressBook;
+import edu.nyu.pqs.hm1021.ps1.ContactEntry;
+import edu.nyu.pqs.hm1021.ps1.ContactQuery;
+import edu.nyu.pqs.hm1021.ps1.InMemoryMetrics;
+
+/**
+ * Benchmarks of the AddressBook API: every search method, the prefix and range
+ * searches, the substring search with and without its index and paged, a
+ * multi-field query with and without the query field indexes, normalized phone
+ * number suffixes, misspelled last names with and without their fuzzy index
+ * and by sound, a search with and without metrics, the scans of a
+ * ColumnarAddressBook, saving and reading in every file format, saving
+ * segments after a few changes, building contacts, and reading the phone
+ * number and email address of every contact and comparing it with equals(),
+ * which should allocate nothing. Every benchmark runs on address books of the
+ * sizes given as arguments, 1000, 10000 and 100000 contacts by default. Large
+ * sizes need a large heap, about 1 GB per million contacts.
+ * <p>
+ * Usage: AddressBookBenchmarks [-warmup millis] [-time millis] [size...]
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class AddressBookBenchmarks {
+
+    private static final long SEED = 42;
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    public static void main(String[] args) throws Exception {
+        long warmupMillis = 1000;
+        long measurementMillis = 2000;
+        int[] sizes = { 1000, 10000, 100000 };
+        int first = 0;
+        while (first < args.length && args[first].startsWith("-")) {
+            if (args[first].equals("-warmup")) {
+                warmupMillis = Long.parseLong(args[first + 1]);
+            } else if (args[first].equals("-time")) {
+                measurementMillis = Long.parseLong(args[first + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option "
+                        + args[first]);
+            }
+            first += 2;
+        }
+        if (first < args.length) {
+            sizes = new int[args.length - first];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = Integer.parseInt(args[first + i]);
+            }
+        }
+
+        Harness harness = new Harness(warmupMillis, measurementMillis);
+        Harness.printHeader();
+        ContactGenerator generator = new ContactGenerator(SEED);
+        harness.measure("build contact", 1, () -> generator.next());
+        for (int size : sizes) {
+            run(harness, size);
+        }
+    }
+
+    private static void run(Harness harness, final int size) throws Exception {
+        final List<ContactEntry> contacts = new ContactGenerator(SEED)
+                .next(size);
+        final AddressBook book = new AddressBook();
+        book.addAll(contacts);
+        final AddressBook indexed = new AddressBook.Builder().substringIndex(
+                true).build();
+        indexed.addAll(contacts);
+        final AddressBook phones = new AddressBook.Builder()
+                .normalizedPhoneIndex(true).build();
+        phones.addAll(contacts);
+        final AddressBook unfuzzy = new AddressBook.Builder().fuzzyNameIndex(
+                false).build();
+        unfuzzy.addAll(contacts);
+        final AddressBook fields = new AddressBook.Builder()
+                .queryFieldIndexes(true).build();
+        fields.addAll(contacts);
+        final AddressBook measured = new AddressBook.Builder().metrics(
+                new InMemoryMetrics()).build();
+        measured.addAll(contacts);
+        final ColumnarAddressBook columnar = new ColumnarAddressBook();
+        columnar.addAll(contacts);
+
+        // the queries cycle through the contacts, so that every run searches
+        // for a contact of the book, the way a lookup usually does
+        final Cycle cycle = new Cycle(contacts);
+
+        harness.measure("add all", size, () -> new AddressBook()
+                .addAll(contacts));
+        // the getters return the immutable fields without copying them, so
+        // these two loops over all the contacts allocate nothing
+        harness.measure("get phone and email, all contacts", size,
+                () -> phoneAndEmailLength(contacts));
+        harness.measure("equals, all contacts", size,
+                () -> countEqual(contacts, cycle.next()));
+        harness.measure("search full name", size,
+                () -> book.searchContactByFullName(cycle.next().getName()));
+        harness.measure("search first name", size,
+                () -> book.searchContactByFirstName(cycle.next().getName()));
+        harness.measure("search last name", size,
+                () -> book.searchContactByLastName(cycle.next().getName()));
+        harness.measure("search last name prefix", size,
+                () -> book.searchContactByLastNamePrefix(cycle.next()
+                        .getName().getLastName().substring(0, 3)));
+        harness.measure("search first name range", size,
+                () -> book.searchContactByFirstNameRange("A", "C"));
+        harness.measure("search last name fuzzy, scan", size,
+                () -> unfuzzy.searchContactByLastNameFuzzy(misspelled(cycle),
+                        1));
+        harness.measure("search last name fuzzy, indexed", size,
+                () -> book.searchContactByLastNameFuzzy(misspelled(cycle), 1));
+        harness.measure("search sounds like", size,
+                () -> book.searchContactBySoundsLike(misspelled(cycle)));
+        harness.measure("search phone number", size,
+                () -> book.searchContactByPhoneNumber(cycle.next()
+                        .getPhoneNumber()));
+        // compared with the previous one, the cost of recording metrics
+        harness.measure("search phone number, metrics", size,
+                () -> measured.searchContactByPhoneNumber(cycle.next()
+                        .getPhoneNumber()));
+        harness.measure("search phone number suffix, scan", size,
+                () -> book.searchContactByPhoneNumberSuffix(last4(cycle)));
+        harness.measure("search phone number suffix, indexed", size,
+                () -> phones.searchContactByPhoneNumberSuffix(last4(cycle)));
+        harness.measure("search postal address", size,
+                () -> book.searchContactByPostalAddress(cycle.next()
+                        .getPostalAddress()));
+        harness.measure("search email address", size,
+                () -> book.searchContactByEmailAddress(cycle.next()
+                        .getEmailId()));
+        harness.measure("search note", size,
+                () -> book.searchContactByNote(cycle.next().getNote()));
+        harness.measure("search substring", size,
+                () -> book.searchBySubString(cycle.next().getEmailId()
+                        .getEmailId()));
+        harness.measure("search substring, indexed", size,
+                () -> indexed.searchBySubString(cycle.next().getEmailId()
+                        .getEmailId()));
+        // the last name and the city are far less selective than the zip code
+        harness.measure("search query", size,
+                () -> query(book, cycle.next()));
+        harness.measure("search query, field indexes", size,
+                () -> query(fields, cycle.next()));
+        // a broad search, whose matches are mostly not needed
+        harness.measure("search substring \"a\"", size,
+                () -> book.searchBySubString("a"));
+        harness.measure("search substring \"a\", page of 20", size,
+                () -> book.searchBySubString("a", 100, 20));
+        harness.measure("stream substring \"a\", first 20", size,
+                () -> book.streamBySubString("a").limit(20)
+                        .collect(Collectors.toList()));
+        // the same searches scanning the columns of a columnar book
+        harness.measure("columnar search phone number", size,
+                () -> columnar.searchContactByPhoneNumber(cycle.next()
+                        .getPhoneNumber()));
+        harness.measure("columnar search postal address", size,
+                () -> columnar.searchContactByPostalAddress(cycle.next()
+                        .getPostalAddress()));
+        harness.measure("columnar search substring", size,
+                () -> columnar.searchBySubString(cycle.next().getEmailId()
+                        .getEmailId()));
+
+        for (final AddressBook.FileFormat format : AddressBook.FileFormat
+                .values()) {
+            final File file = File.createTempFile("abk", ".bench");
+            file.deleteOnExit();
+            try {
+                String name = format.name().toLowerCase();
+                harness.measure("save " + name, size, () -> {
+                    if (format == AddressBook.FileFormat.TEXT)
+                        book.save(file, CHARSET);
+                    else
+                        book.save(file, format);
+                    return file;
+                });
+                harness.measure("read " + name, size,
+                        () -> book.read(file, CHARSET));
+                if (format == AddressBook.FileFormat.TEXT) {
+                    harness.measure("read text, parallel", size,
+                            () -> book.readParallel(file, CHARSET, Runtime
+                                    .getRuntime().availableProcessors()));
+                }
+            } finally {
+                file.delete();
+            }
+        }
+
+        // every save follows changes to 0.1% of the contacts, so only the
+        // segments holding them are written again
+        final File directory = Files.createTempDirectory("abk").toFile();
+        try {
+            final AddressBook segmented = new AddressBook();
+            segmented.addAll(contacts);
+            segmented.saveSegments(directory);
+            harness.measure("save segments, 0.1% changed", size, () -> {
+                for (int i = 0; i < Math.max(1, size / 1000); i++) {
+                    ContactEntry contact = cycle.next();
+                    segmented.removeContactEntry(contact);
+                    segmented.addContactEntry(contact);
+                }
+                segmented.saveSegments(directory);
+                return directory;
+            });
+            harness.measure("read segments", size,
+                    () -> segmented.readSegments(directory));
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private static int phoneAndEmailLength(List<ContactEntry> contacts) {
+        int length = 0;
+        for (ContactEntry contact : contacts) {
+            length += contact.getPhoneNumber().getPhoneNum().length()
+                    + contact.getEmailId().getEmailId().length();
+        }
+        return length;
+    }
+
+    private static int countEqual(List<ContactEntry> contacts,
+            ContactEntry contact) {
+        int equal = 0;
+        for (ContactEntry other : contacts) {
+            if (other.equals(contact))
+                equal++;
+        }
+        return equal;
+    }
+
+    /*
+     * Returns the last name of the next contact without its second letter.
+     */
+    private static String misspelled(Cycle cycle) {
+        String name = cycle.next().getName().getLastName();
+        return name.charAt(0) + name.substring(2);
+    }
+
+    private static String last4(Cycle cycle) {
+        String number = cycle.next().getPhoneNumber().getPhoneNum();
+        return number.substring(number.length() - 4);
+    }
+
+    /*
+     * Searches for the contacts with the last name, city and zip code of the
+     * given one.
+     */
+    private static List<ContactEntry> query(AddressBook book,
+            ContactEntry contact) {
+        return book.search(new ContactQuery.Builder()
+                .lastName(contact.getName().getLastName())
+                .city(contact.getPostalAddress().getCity())
+                .zip(contact.getPostalAddress().getZip()).build());
+    }
+
+    /*
+     * Hands out the contacts one after the other, starting over at the end.
+     */
+    private static class Cycle {
+
+        private final List<ContactEntry> contacts;
+        private int next;
+
+        Cycle(List<ContactEntry> contacts) {
+            this.contacts = contacts;
+        }
+
+        ContactEntry next() {
+            ContactEntry contact = contacts.get(next);
+            next = (next + 1 == contacts.size()) ? 0 : next + 1;
+            return contact;
+        }
+    }
+}
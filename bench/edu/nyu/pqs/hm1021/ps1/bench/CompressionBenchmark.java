@@ -0,0 +1,122 @@
+package edu.nyu.pqs.hm1021.ps1.bench;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import edu.nyu.pqs.hm1021.ps1.AddressBook;
+import edu.nyu.pqs.hm1021.ps1.BlockCodec;
+import edu.nyu.pqs.hm1021.ps1.ContactEntry;
+
+/**
+ * Compares the size of an address book saved in BINARY format without
+ * compression and with the DEFLATE and GZIP codecs at several levels, to the
+ * time it takes to save it, read it and read it on all the processors. Every
+ * operation runs a few times to warm up and then the given number of times,
+ * and the median time is reported. Throughputs are in MB of the uncompressed
+ * BINARY file per second, so that they can be compared across codecs, and the
+ * ratio is the size of that file divided by the size of the saved one. The
+ * size of the same address book in TEXT format is printed first.
+ * <p>
+ * Usage: CompressionBenchmark [-runs count] [contacts]
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class CompressionBenchmark {
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+    private static final int WARMUP_RUNS = 3;
+
+    /**
+     * An operation which is timed.
+     */
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = 5;
+        int first = 0;
+        while (first < args.length && args[first].startsWith("-")) {
+            if (args[first].equals("-runs")) {
+                runs = Integer.parseInt(args[first + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option "
+                        + args[first]);
+            }
+            first += 2;
+        }
+        int size = (first < args.length) ? Integer.parseInt(args[first])
+                : 100000;
+
+        final AddressBook book = new AddressBook();
+        List<ContactEntry> contacts = new ContactGenerator(42).next(size);
+        book.addAll(contacts);
+        final int parallelism = Runtime.getRuntime().availableProcessors();
+        final File file = File.createTempFile("abk", ".bench");
+        file.deleteOnExit();
+        try {
+            book.save(file, CHARSET);
+            long textBytes = file.length();
+            book.save(file, AddressBook.FileFormat.BINARY);
+            long rawBytes = file.length();
+            System.out.println(String.format(Locale.ROOT,
+                    "%d contacts, text %d bytes, binary %d bytes", size,
+                    textBytes, rawBytes));
+            System.out.println(String.format(Locale.ROOT,
+                    "%-12s %12s %8s %12s %12s %16s", "codec", "bytes",
+                    "ratio", "save MB/s", "read MB/s", "parallel MB/s"));
+
+            String[] names = { "none", "deflate 1", "deflate 6", "deflate 9",
+                    "gzip 1", "gzip 6", "gzip 9" };
+            final BlockCodec[] codecs = { null, BlockCodec.deflate(1),
+                    BlockCodec.deflate(6), BlockCodec.deflate(9),
+                    BlockCodec.gzip(1), BlockCodec.gzip(6),
+                    BlockCodec.gzip(9) };
+            for (int i = 0; i < codecs.length; i++) {
+                final BlockCodec codec = codecs[i];
+                long save = medianNanos(runs, () -> {
+                    if (codec == null)
+                        book.save(file, AddressBook.FileFormat.BINARY);
+                    else
+                        book.save(file, AddressBook.FileFormat.BINARY, codec);
+                });
+                long bytes = file.length();
+                long read = medianNanos(runs, () -> book.read(file, CHARSET));
+                long parallel = medianNanos(runs, () -> book.readParallel(
+                        file, CHARSET, parallelism));
+                System.out.println(String.format(Locale.ROOT,
+                        "%-12s %12d %8.2f %12.1f %12.1f %16.1f", names[i],
+                        bytes, (double) rawBytes / bytes,
+                        megabytesPerSecond(rawBytes, save),
+                        megabytesPerSecond(rawBytes, read),
+                        megabytesPerSecond(rawBytes, parallel)));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static long medianNanos(int runs, Operation operation)
+            throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            operation.run();
+        }
+        long[] nanos = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[runs / 2];
+    }
+
+    private static double megabytesPerSecond(long bytes, long nanos) {
+        return bytes / 1e6 / (nanos / 1e9);
+    }
+}
@@ -0,0 +1,304 @@
+package edu.nyu.pqs.hm1021.ps1.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.nyu.pqs.hm1021.ps1.AddressBook;
+import edu.nyu.pqs.hm1021.ps1.ConcurrentAddressBook;
+import edu.nyu.pqs.hm1021.ps1.ContactEntry;
+
+/**
+ * Stress test and read scaling measurement of ConcurrentAddressBook.
+ * <p>
+ * The stress test runs two writers and at least two readers on an address book
+ * of 1000 contacts for the given time. Writers add pairs of contacts sharing a
+ * note in a single addAll(), remove some of the pairs again with removeAll(),
+ * and add single contacts with addContactEntryWithId(). Readers check on every
+ * snapshot that a pair is either fully there or not at all, that the note index
+ * finds the same contacts as a scan, and that the ids of the contacts found
+ * lead back to them. Once the writers are done, the final snapshot has to hold
+ * exactly the contacts added and not removed, and the ids handed out have to be
+ * distinct. The program stops at the first violation.
+ * <p>
+ * The read scaling measurement then runs 1, 2, 4 and up to the number of
+ * processors readers, or the number given, searching by last name on an address
+ * book of the given size, 10000 contacts by default, first alone and then next
+ * to a writer which keeps adding and removing a contact, and prints the
+ * searches per second of every configuration.
+ * <p>
+ * Usage: ConcurrencyBenchmark [-time millis] [-threads readers] [size]
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class ConcurrencyBenchmark {
+
+    private static final long SEED = 42;
+    private static final int WRITERS = 2;
+    // small, so that the writers, which copy the book, get many writes done
+    private static final int STRESS_SIZE = 1000;
+
+    /**
+     * The work of a thread, which may fail.
+     */
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long millis = 3000;
+        int maxReaders = Runtime.getRuntime().availableProcessors();
+        int first = 0;
+        while (first < args.length && args[first].startsWith("-")) {
+            if (args[first].equals("-time")) {
+                millis = Long.parseLong(args[first + 1]);
+            } else if (args[first].equals("-threads")) {
+                maxReaders = Integer.parseInt(args[first + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option "
+                        + args[first]);
+            }
+            first += 2;
+        }
+        int size = (first < args.length) ? Integer.parseInt(args[first])
+                : 10000;
+
+        stress(Math.max(2, maxReaders), millis);
+        scaling(size, maxReaders, millis);
+    }
+
+    private static void stress(int readers, long millis) throws Exception {
+        final ConcurrentAddressBook book = new ConcurrentAddressBook();
+        book.addAll(new ContactGenerator(SEED).next(STRESS_SIZE));
+        final AtomicInteger batches = new AtomicInteger();
+        final Map<Integer, List<ContactEntry>> live =
+                new ConcurrentHashMap<Integer, List<ContactEntry>>();
+        final Queue<Long> singleIds = new ConcurrentLinkedQueue<Long>();
+        final AtomicInteger checks = new AtomicInteger();
+        final AtomicReference<Throwable> failure =
+                new AtomicReference<Throwable>();
+        final long deadline = System.nanoTime() + millis * 1000000L;
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int w = 0; w < WRITERS; w++) {
+            final long seed = SEED + 1 + w;
+            threads.add(new Thread(guard(failure, () -> {
+                ContactGenerator generator = new ContactGenerator(seed);
+                Random random = new Random(seed);
+                while (System.nanoTime() < deadline && failure.get() == null) {
+                    int batch = batches.getAndIncrement();
+                    List<ContactEntry> pair = Arrays.asList(
+                            withNote(generator.next(), batchNote(batch)),
+                            withNote(generator.next(), batchNote(batch)));
+                    book.addAll(pair);
+                    live.put(batch, pair);
+                    if (random.nextInt(3) == 0) {
+                        List<ContactEntry> removed = live.remove(random
+                                .nextInt(batch + 1));
+                        if (removed != null && book.removeAll(removed) != 2)
+                            throw new IllegalStateException(
+                                    "A pair was not removed");
+                    }
+                    if (random.nextInt(4) == 0)
+                        singleIds.add(book.addContactEntryWithId(generator
+                                .next()));
+                }
+            }), "writer " + w));
+        }
+        for (int r = 0; r < readers; r++) {
+            final long seed = SEED + 100 + r;
+            threads.add(new Thread(guard(failure, () -> {
+                Random random = new Random(seed);
+                while (System.nanoTime() < deadline && failure.get() == null) {
+                    int count = batches.get();
+                    if (count == 0)
+                        continue;
+                    checkBatch(book.snapshot(), random.nextInt(count));
+                    checks.incrementAndGet();
+                }
+            }), "reader " + r));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null)
+            throw new IllegalStateException("Stress test failed", failure
+                    .get());
+
+        AddressBook last = book.snapshot();
+        for (int batch = 0; batch < batches.get(); batch++) {
+            int found = last.searchContactByNote(batchNote(batch)).size();
+            if (found != (live.containsKey(batch) ? 2 : 0))
+                throw new IllegalStateException("Pair " + batch + " has "
+                        + found + " contacts left");
+            checkBatch(last, batch);
+        }
+        Set<Long> distinct = new HashSet<Long>(singleIds);
+        if (distinct.size() != singleIds.size())
+            throw new IllegalStateException("An id was handed out twice");
+        for (long id : singleIds) {
+            if (id < 0 || last.getContactEntryById(id) == null)
+                throw new IllegalStateException("Contact " + id + " is lost");
+        }
+        int expected = STRESS_SIZE + 2 * live.size() + singleIds.size();
+        int actual = last.searchBySubString("").size();
+        if (actual != expected)
+            throw new IllegalStateException("Expected " + expected
+                    + " contacts, found " + actual);
+        System.out.println(String.format(Locale.ROOT,
+                "stress: %d writers, %d readers, %d pairs, %d singles, "
+                        + "%d snapshot checks passed", WRITERS, readers,
+                batches.get(), singleIds.size(), checks.get()));
+    }
+
+    /*
+     * Fails unless the pair is fully in the snapshot or not at all, the note
+     * index agrees with a scan, and the ids of the pair lead back to it.
+     */
+    private static void checkBatch(AddressBook snapshot, int batch) {
+        String note = batchNote(batch);
+        List<ContactEntry> indexed = snapshot.searchContactByNote(note);
+        if (indexed.size() != 0 && indexed.size() != 2)
+            throw new IllegalStateException("Pair " + batch
+                    + " is partially applied");
+        List<ContactEntry> scanned = snapshot.searchBySubString(note);
+        if (!indexed.equals(scanned))
+            throw new IllegalStateException("Note index disagrees with a scan"
+                    + " on pair " + batch);
+        for (ContactEntry contact : indexed) {
+            long id = snapshot.getContactId(contact);
+            if (id < 0 || !contact.equals(snapshot.getContactEntryById(id)))
+                throw new IllegalStateException("Id of pair " + batch
+                        + " does not lead back to it");
+        }
+    }
+
+    private static void scaling(int size, int maxReaders, long millis)
+            throws Exception {
+        final ConcurrentAddressBook book = new ConcurrentAddressBook();
+        final List<ContactEntry> contacts = new ContactGenerator(SEED)
+                .next(size);
+        book.addAll(contacts);
+        System.out.println(String.format(Locale.ROOT, "%8s %8s %14s %14s %8s",
+                "readers", "writer", "searches/s", "per reader/s", "scaling"));
+        for (boolean writing : new boolean[] { false, true }) {
+            double single = 0;
+            for (int readers = 1; readers <= maxReaders; readers *= 2) {
+                double rate = readRate(book, contacts, readers, writing,
+                        millis);
+                if (readers == 1)
+                    single = rate;
+                System.out.println(String.format(Locale.ROOT,
+                        "%8d %8s %14.0f %14.0f %8.2f", readers, writing ? "yes"
+                                : "no", rate, rate / readers, rate / single));
+                if (readers < maxReaders && readers * 2 > maxReaders)
+                    readers = maxReaders / 2;
+            }
+        }
+    }
+
+    /*
+     * Returns the searches per second of the given number of readers, with
+     * or without a writer changing the address book meanwhile. The threads
+     * run for half of the time to warm up before they are measured.
+     */
+    private static double readRate(final ConcurrentAddressBook book,
+            final List<ContactEntry> contacts, int readers, boolean writing,
+            long millis) throws Exception {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure =
+                new AtomicReference<Throwable>();
+        final AtomicLongArray counts = new AtomicLongArray(readers);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int r = 0; r < readers; r++) {
+            final int reader = r;
+            threads.add(new Thread(guard(failure, () -> {
+                int next = reader * 7919;
+                while (running.get()) {
+                    ContactEntry contact = contacts.get(next % contacts
+                            .size());
+                    next++;
+                    if (book.searchContactByLastName(contact.getName())
+                            .isEmpty())
+                        throw new IllegalStateException("Contact not found");
+                    counts.lazySet(reader, counts.get(reader) + 1);
+                }
+            })));
+        }
+        if (writing) {
+            threads.add(new Thread(guard(failure, () -> {
+                ContactGenerator generator = new ContactGenerator(SEED + 1);
+                while (running.get()) {
+                    ContactEntry contact = generator.next();
+                    book.addContactEntry(contact);
+                    book.removeContactEntry(contact);
+                }
+            })));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(millis / 2);
+        long before = sum(counts);
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        long searches = sum(counts) - before;
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null)
+            throw new IllegalStateException("Reader failed", failure.get());
+        return searches * 1e9 / elapsed;
+    }
+
+    private static long sum(AtomicLongArray counts) {
+        long sum = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            sum += counts.get(i);
+        }
+        return sum;
+    }
+
+    private static Runnable guard(final AtomicReference<Throwable> failure,
+            final Task body) {
+        return () -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        };
+    }
+
+    private static String batchNote(int batch) {
+        return String.format(Locale.ROOT, "batch-%08d", batch);
+    }
+
+    private static ContactEntry withNote(ContactEntry contact, String note) {
+        ContactEntry.Builder builder = new ContactEntry.Builder(contact
+                .getName(), contact.getPhoneNumber());
+        if (contact.getPostalAddress() != null)
+            builder.postalAddress(contact.getPostalAddress());
+        if (contact.getEmailId() != null)
+            builder.emailId(contact.getEmailId());
+        return builder.note(note).build();
+    }
+}
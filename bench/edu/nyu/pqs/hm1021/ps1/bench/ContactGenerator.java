@@ -0,0 +1,155 @@
+package edu.nyu.pqs.hm1021.ps1.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.nyu.pqs.hm1021.ps1.ContactEntry;
+import edu.nyu.pqs.hm1021.ps1.ContactName;
+import edu.nyu.pqs.hm1021.ps1.EmailAddress;
+import edu.nyu.pqs.hm1021.ps1.PhoneNumber;
+import edu.nyu.pqs.hm1021.ps1.PostalAddress;
+
+/**
+ * Generates synthetic contacts for the benchmarks. Names, cities, states and
+ * countries are drawn from small pools, so that they repeat the way they do in
+ * real address books, while phone numbers and email addresses are unique. Half
+ * of the contacts have a note: a one-word tag for two in five of them, and
+ * otherwise a short sentence which rarely repeats, like the reminders people
+ * write down. The same seed always generates the same contacts.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class ContactGenerator {
+
+    private static final String[] FIRST_NAMES = { "Joey", "Chandler", "Ross",
+            "Rachel", "Monica", "Phoebe", "Mike", "Emily", "Janice", "Gunther",
+            "Richard", "Carol", "Susan", "Ben", "Emma", "Frank", "Ursula",
+            "David", "Julie", "Kathy" };
+
+    private static final String[] LAST_NAMES = { "Tribbiani", "Bing", "Geller",
+            "Green", "Buffay", "Hannigan", "Waltham", "Litman", "Burke",
+            "Willick", "Bunch", "Stevens", "Miller", "Smith", "Johnson",
+            "Brown", "Davis", "Wilson", "Moore", "Taylor", "Anderson",
+            "Thomas", "Jackson", "White", "Harris", "Martin", "Thompson",
+            "Garcia", "Martinez", "Robinson" };
+
+    private static final String[] CITIES = { "New York", "Boston", "Chicago",
+            "Seattle", "Austin", "Denver", "Portland", "Miami", "Atlanta",
+            "Phoenix", "Dallas", "Houston", "San Diego", "San Jose",
+            "Philadelphia", "Detroit", "Baltimore", "Nashville", "Memphis",
+            "Columbus" };
+
+    private static final String[] STATES = { "NY", "MA", "IL", "WA", "TX",
+            "CO", "OR", "FL", "GA", "AZ", "CA", "PA", "MI", "MD", "TN", "OH" };
+
+    private static final String[] COUNTRIES = { "USA", "Canada", "Mexico",
+            "UK", "India" };
+
+    private static final String[] DOMAINS = { "gmail.com", "yahoo.com",
+            "outlook.com", "nyu.edu", "example.org" };
+
+    private static final String[] NOTE_TAGS = { "friend", "work", "family",
+            "neighbor", "gym" };
+
+    private static final String[] PLACES = { "the conference", "college",
+            "a wedding", "the office party", "the book club", "a flight",
+            "the coffee house", "a hackathon", "the dog park", "a concert" };
+
+    private static final String[] MONTHS = { "January", "February", "March",
+            "April", "May", "June", "July", "August", "September", "October",
+            "November", "December" };
+
+    private static final String[] TOPICS = { "the move", "the new job",
+            "the kids", "the lease", "the trip", "the band", "the thesis",
+            "the startup" };
+
+    private final Random random;
+    private long sequence;
+
+    /**
+     * Creates a generator whose contacts are determined by the seed.
+     *
+     * @param seed
+     *            Seed of the random choices
+     */
+    public ContactGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Generates the next contact.
+     *
+     * @return A contact with all its fields set
+     */
+    public ContactEntry next() {
+        long n = sequence++;
+        String firstName = pick(FIRST_NAMES);
+        String lastName = pick(LAST_NAMES);
+        ContactName name = new ContactName.Builder(firstName)
+                .lastName(lastName).middleName(random.nextBoolean() ? "" : "M")
+                .build();
+        PostalAddress address = new PostalAddress.Builder(pick(COUNTRIES))
+                .apt("Apt " + (1 + random.nextInt(40)))
+                .street((1 + random.nextInt(999)) + " Main Street")
+                .city(pick(CITIES)).state(pick(STATES))
+                .zip(String.valueOf(10000 + random.nextInt(90000))).build();
+        return new ContactEntry.Builder(name, phoneNumber(n))
+                .postalAddress(address)
+                .emailId(new EmailAddress(firstName.toLowerCase() + "." + n
+                        + "@" + pick(DOMAINS)))
+                .note(note()).build();
+    }
+
+    private String note() {
+        int kind = random.nextInt(10);
+        if (kind < 5)
+            return "";
+        if (kind < 7)
+            return pick(NOTE_TAGS);
+        String date = pick(MONTHS) + " " + (1 + random.nextInt(28)) + ", "
+                + (1990 + random.nextInt(35));
+        switch (random.nextInt(3)) {
+        case 0:
+            return "Met at " + pick(PLACES) + " on " + date + " through "
+                    + pick(FIRST_NAMES);
+        case 1:
+            return "Call after " + (5 + random.nextInt(4)) + " pm, ask about "
+                    + pick(TOPICS) + " since " + date;
+        default:
+            return "Owes " + (5 + random.nextInt(500)) + " dollars since "
+                    + date;
+        }
+    }
+
+    /**
+     * Generates the given number of contacts.
+     *
+     * @param count
+     *            Number of contacts
+     * @return A list of new contacts
+     */
+    public List<ContactEntry> next(int count) {
+        List<ContactEntry> contacts = new ArrayList<ContactEntry>(count);
+        for (int i = 0; i < count; i++) {
+            contacts.add(next());
+        }
+        return contacts;
+    }
+
+    /**
+     * Returns the phone number of the n-th generated contact.
+     *
+     * @param n
+     *            Position of the contact, from 0
+     * @return Its phone number
+     */
+    public static PhoneNumber phoneNumber(long n) {
+        return new PhoneNumber("+1-555-" + (1000000 + n));
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
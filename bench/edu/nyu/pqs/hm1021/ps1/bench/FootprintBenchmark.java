@@ -0,0 +1,102 @@
+package edu.nyu.pqs.hm1021.ps1.bench;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+
+import edu.nyu.pqs.hm1021.ps1.AddressBook;
+import edu.nyu.pqs.hm1021.ps1.ColumnarAddressBook;
+import edu.nyu.pqs.hm1021.ps1.ContactEntry;
+import edu.nyu.pqs.hm1021.ps1.PostalAddress;
+
+/**
+ * Measures the heap retained per contact by an address book read from a file
+ * in every format and by a ColumnarAddressBook, and counts the distinct String
+ * instances holding the city, state and country of the contacts, which repeat
+ * a few values only. The retained heap is the growth of the used heap after a
+ * full collection, so the benchmark should run alone in its JVM, with a heap
+ * of about 1 GB per million contacts.
+ * <p>
+ * Usage: FootprintBenchmark [contacts]
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class FootprintBenchmark {
+
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    public static void main(String[] args) throws Exception {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        File file = File.createTempFile("abk", ".bench");
+        file.deleteOnExit();
+        try {
+            System.out.println(String.format(Locale.ROOT, "%-18s %10s %14s %14s",
+                    "format", "contacts", "bytes/contact", "field strings"));
+            for (AddressBook.FileFormat format : AddressBook.FileFormat
+                    .values()) {
+                save(size, file, format);
+                long before = usedHeap();
+                List<ContactEntry> contacts = new AddressBook().read(file,
+                        CHARSET);
+                long retained = usedHeap() - before;
+                System.out.println(String.format(Locale.ROOT,
+                        "%-18s %10d %14.1f %14d", format.name().toLowerCase(),
+                        contacts.size(), (double) retained / contacts.size(),
+                        countFieldStrings(contacts)));
+                contacts = null;
+            }
+            long before = usedHeap();
+            ColumnarAddressBook columnar = ColumnarAddressBook.read(file,
+                    CHARSET);
+            long retained = usedHeap() - before;
+            // the columnar book holds no String per field at all
+            System.out.println(String.format(Locale.ROOT,
+                    "%-18s %10d %14.1f %14s", "columnar", columnar.size(),
+                    (double) retained / columnar.size(), "-"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void save(int size, File file, AddressBook.FileFormat format)
+            throws Exception {
+        AddressBook book = new AddressBook();
+        book.addAll(new ContactGenerator(42).next(size));
+        if (format == AddressBook.FileFormat.TEXT)
+            book.save(file, CHARSET);
+        else
+            book.save(file, format);
+    }
+
+    /*
+     * Counts the String instances, not values, of the city, state and country
+     * of the contacts.
+     */
+    private static int countFieldStrings(List<ContactEntry> contacts) {
+        IdentityHashMap<String, Boolean> strings =
+                new IdentityHashMap<String, Boolean>();
+        for (ContactEntry contact : contacts) {
+            PostalAddress address = contact.getPostalAddress();
+            strings.put(address.getCity(), Boolean.TRUE);
+            strings.put(address.getState(), Boolean.TRUE);
+            strings.put(address.getCountry(), Boolean.TRUE);
+        }
+        return strings.size();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // collections may need several rounds to settle
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
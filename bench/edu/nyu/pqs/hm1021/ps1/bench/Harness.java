@@ -0,0 +1,120 @@
+package edu.nyu.pqs.hm1021.ps1.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A minimal benchmark harness with no dependencies. An operation is first run
+ * repeatedly for a warm-up period so that the JIT compiles it, then for a
+ * measurement period during which every run is timed. For every operation the
+ * harness prints the throughput, the latency percentiles and the number of
+ * bytes allocated per run and per second by the benchmarking thread.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class Harness {
+
+    /**
+     * An operation to be measured. Its result is consumed by the harness, so
+     * that the JIT cannot optimize the operation away.
+     */
+    public interface Operation {
+        Object run() throws Exception;
+    }
+
+    private static final int MAX_SAMPLES = 1 << 20;
+
+    private final long warmupNanos;
+    private final long measurementNanos;
+    private final com.sun.management.ThreadMXBean threads;
+
+    // written by every run, so that results are not dead code
+    private volatile int sink;
+
+    /**
+     * Creates a harness with the given warm-up and measurement periods.
+     *
+     * @param warmupMillis
+     *            Time spent running an operation before measuring it
+     * @param measurementMillis
+     *            Time spent measuring an operation
+     */
+    public Harness(long warmupMillis, long measurementMillis) {
+        this.warmupNanos = warmupMillis * 1000000L;
+        this.measurementNanos = measurementMillis * 1000000L;
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+    }
+
+    /**
+     * Prints the header of the result table.
+     */
+    public static void printHeader() {
+        System.out.println(String.format(Locale.ROOT,
+                "%-40s %10s %14s %10s %10s %10s %12s %10s", "benchmark",
+                "size", "ops/s", "p50 us", "p99 us", "p99.9 us", "B/op",
+                "MB/s"));
+    }
+
+    /**
+     * Warms up, measures and prints the results of an operation.
+     *
+     * @param name
+     *            Name of the benchmark
+     * @param size
+     *            Size of the address book the operation runs on
+     * @param operation
+     *            Operation to measure
+     * @throws Exception
+     *             If the operation fails
+     */
+    public void measure(String name, int size, Operation operation)
+            throws Exception {
+        long deadline = System.nanoTime() + warmupNanos;
+        do {
+            consume(operation.run());
+        } while (System.nanoTime() < deadline);
+
+        long[] samples = new long[1024];
+        int count = 0;
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        deadline = start + measurementNanos;
+        long now = start;
+        do {
+            long before = now;
+            consume(operation.run());
+            now = System.nanoTime();
+            if (count == samples.length && count < MAX_SAMPLES)
+                samples = Arrays.copyOf(samples, count * 2);
+            if (count < samples.length)
+                samples[count] = now - before;
+            count++;
+        } while (now < deadline);
+        long elapsed = now - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId)
+                - allocatedBefore;
+
+        int recorded = Math.min(count, samples.length);
+        Arrays.sort(samples, 0, recorded);
+        System.out.println(String.format(Locale.ROOT,
+                "%-40s %10d %14.1f %10.1f %10.1f %10.1f %12d %10.1f", name,
+                size, count * 1e9 / elapsed,
+                percentile(samples, recorded, 0.50) / 1e3,
+                percentile(samples, recorded, 0.99) / 1e3,
+                percentile(samples, recorded, 0.999) / 1e3, allocated / count,
+                allocated * 1e9 / elapsed / (1 << 20)));
+    }
+
+    private void consume(Object result) {
+        sink += (result == null) ? 0 : System.identityHashCode(result);
+    }
+
+    private static long percentile(long[] sorted, int count, double fraction) {
+        int index = (int) Math.ceil(fraction * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+}
@@ -0,0 +1,171 @@
+package edu.nyu.pqs.hm1021.ps1.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import edu.nyu.pqs.hm1021.ps1.EmailAddress;
+import edu.nyu.pqs.hm1021.ps1.PhoneNumber;
+
+/**
+ * Checks that EmailAddress and PhoneNumber accept exactly the strings matched
+ * by the regular expressions they were validated with before, and compares the
+ * time both take. Random strings are drawn from an alphabet holding every
+ * character the expressions treat specially, plus a few they reject, so that
+ * most of them are near misses; a fixed list of edge cases is checked first.
+ * The program stops at the first string on which the validator and the
+ * expression disagree. The timings then validate the same generated
+ * addresses and numbers through the constructors, through String.matches()
+ * and, for email addresses, through a precompiled Pattern. They are all
+ * valid, as the constructors reject invalid ones by throwing an exception,
+ * which would cost more than the validation.
+ * <p>
+ * Usage: ValidatorBenchmark [-strings count] [-warmup millis] [-time millis]
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class ValidatorBenchmark {
+
+    private static final String EMAIL_REGEX =
+            "^[a-zA-Z0-9_.+-]+@[a-zA-Z0-9-]+\\.[a-zA-Z0-9-.]+$|^$";
+    private static final String PHONE_REGEX = "^[-0-9*#+]+$|^$";
+
+    private static final String ALPHABET = "aZ09_.+-@*# \n\u00e9";
+    private static final int MAX_LENGTH = 12;
+    private static final int BATCH = 1000;
+
+    private static final String[] EDGE_CASES = { "", "@", ".", "a@b", "a@b.",
+            "a@.b", "@b.c", "a@b.c", "a@b.c\n", "a@b.c.", "a@b..c", "a.@b.c",
+            "a@b-.c", "a@@b.c", "a@b.c@d", "a b@c.d", "-", "+", "*#",
+            "555-1234", "555-1234\n", "+1 555", "\n" };
+
+    public static void main(String[] args) throws Exception {
+        long warmupMillis = 1000;
+        long measurementMillis = 2000;
+        int strings = 3000000;
+        for (int i = 0; i < args.length; i += 2) {
+            if (args[i].equals("-strings")) {
+                strings = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-warmup")) {
+                warmupMillis = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("-time")) {
+                measurementMillis = Long.parseLong(args[i + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        for (String s : EDGE_CASES) {
+            check(s);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < strings; i++) {
+            check(randomString(random));
+        }
+        System.out.println(String.format("%d strings validated alike",
+                EDGE_CASES.length + strings));
+
+        final List<String> emails = new ArrayList<String>(BATCH);
+        final List<String> phones = new ArrayList<String>(BATCH);
+        ContactGenerator generator = new ContactGenerator(42);
+        for (int i = 0; i < BATCH; i++) {
+            emails.add(generator.next().getEmailId().getEmailId());
+            phones.add(ContactGenerator.phoneNumber(i).getPhoneNum());
+        }
+
+        final Pattern emailPattern = Pattern.compile(EMAIL_REGEX);
+        Harness harness = new Harness(warmupMillis, measurementMillis);
+        Harness.printHeader();
+        harness.measure("validate email, regex", BATCH,
+                () -> countMatches(emails, EMAIL_REGEX));
+        harness.measure("validate email, scanner", BATCH,
+                () -> countEmails(emails));
+        harness.measure("validate email, precompiled regex", BATCH,
+                () -> countMatches(emails, emailPattern));
+        harness.measure("validate phone, regex", BATCH,
+                () -> countMatches(phones, PHONE_REGEX));
+        harness.measure("validate phone, scanner", BATCH,
+                () -> countPhones(phones));
+    }
+
+    /*
+     * Fails if the constructors and the expressions disagree on the string.
+     */
+    private static void check(String s) {
+        if (acceptsEmail(s) != s.matches(EMAIL_REGEX))
+            throw new IllegalStateException("Email validators disagree on \""
+                    + escape(s) + "\"");
+        if (acceptsPhone(s) != s.matches(PHONE_REGEX))
+            throw new IllegalStateException("Phone validators disagree on \""
+                    + escape(s) + "\"");
+    }
+
+    private static String randomString(Random random) {
+        int length = random.nextInt(MAX_LENGTH + 1);
+        StringBuilder s = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            s.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return s.toString();
+    }
+
+    private static boolean acceptsEmail(String s) {
+        try {
+            new EmailAddress(s);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean acceptsPhone(String s) {
+        try {
+            new PhoneNumber(s);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static int countEmails(List<String> emails) {
+        int valid = 0;
+        for (String email : emails) {
+            if (acceptsEmail(email))
+                valid++;
+        }
+        return valid;
+    }
+
+    private static int countPhones(List<String> phones) {
+        int valid = 0;
+        for (String phone : phones) {
+            if (acceptsPhone(phone))
+                valid++;
+        }
+        return valid;
+    }
+
+    private static int countMatches(List<String> strings, String regex) {
+        int valid = 0;
+        for (String s : strings) {
+            if (s.matches(regex))
+                valid++;
+        }
+        return valid;
+    }
+
+    private static int countMatches(List<String> strings, Pattern pattern) {
+        int valid = 0;
+        for (String s : strings) {
+            if (pattern.matcher(s).matches())
+                valid++;
+        }
+        return valid;
+    }
+
+    private static String escape(String s) {
+        return s.replace("\n", "\\n");
+    }
+}
@@ -1,16 +1,39 @@
 package edu.nyu.pqs.hm1021.ps1;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Scanner;
-import java.util.StringTokenizer;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * AddressBook provides a well defined API to an application developer to add a
@@ -25,32 +48,461 @@ import java.util.StringTokenizer;
  */
 public class AddressBook {
 
-    private List<ContactEntry> addressBook;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /*
+     * The contacts in the order they were added, keyed by the id assigned to
+     * them when they were added.
+     */
+    private ContactIdList addressBook;
+
+    private long nextId;
+
+    /*
+     * One hash index per exact-match search type, kept in sync with
+     * addressBook by addContactEntry() and removeContactEntry(). The first and
+     * last name indexes are sorted, for the prefix and range searches. The
+     * types only searched by a ContactQuery have no index unless it is enabled
+     * by the Builder.
+     */
+    private Map<SearchByType, HashIndex> indexes;
+
+    /*
+     * Optional trigram index for substring searches, null if disabled.
+     */
+    private NGramIndex substringIndex;
+
+    /*
+     * Optional index of the normalized phone numbers, null if disabled.
+     */
+    private PhoneIndex phoneIndex;
+
+    /*
+     * BK-trees of the distinct first and last name keys, for the fuzzy name
+     * searches, null if disabled.
+     */
+    private Map<SearchByType, BkTree> fuzzyIndexes;
+
+    /*
+     * Index of the Soundex codes of the first, middle and last names, for the
+     * sounds like search.
+     */
+    private PhoneticIndex phoneticIndex;
+
+    /*
+     * Set on the snapshots published by ConcurrentAddressBook, which must not
+     * change once other threads can see them.
+     */
+    private boolean readOnly;
+
+    private MetricsListener metrics;
+
+    /*
+     * The segments of ids changed since the last saveSegments(), and the
+     * directory and version of that save. A copy of the address book carries
+     * them over, so that the snapshots of ConcurrentAddressBook keep track of
+     * the changes made since the last save. They are only changed by a
+     * writable address book, or on a snapshot under the write lock of its
+     * ConcurrentAddressBook.
+     */
+    private BitSet dirtySegments;
+    private File segmentDirectory;
+    private long segmentVersion;
 
     private enum SearchByType {
-        NAME, FIRSTNAME, LASTNAME, PHONENUMBER, POSTALADDRESS, EMAILID, NOTE, SUBSTRING
+        NAME(MetricsListener.Operation.SEARCH_FULL_NAME),
+        FIRSTNAME(MetricsListener.Operation.SEARCH_FIRST_NAME),
+        LASTNAME(MetricsListener.Operation.SEARCH_LAST_NAME),
+        PHONENUMBER(MetricsListener.Operation.SEARCH_PHONE_NUMBER),
+        POSTALADDRESS(MetricsListener.Operation.SEARCH_POSTAL_ADDRESS),
+        EMAILID(MetricsListener.Operation.SEARCH_EMAIL_ADDRESS),
+        NOTE(MetricsListener.Operation.SEARCH_NOTE),
+        SUBSTRING(MetricsListener.Operation.SEARCH_SUBSTRING),
+        // only searched as part of a ContactQuery, and only indexed if
+        // enabled by Builder.queryFieldIndexes()
+        CITY(MetricsListener.Operation.SEARCH_QUERY),
+        STATE(MetricsListener.Operation.SEARCH_QUERY),
+        ZIP(MetricsListener.Operation.SEARCH_QUERY),
+        COUNTRY(MetricsListener.Operation.SEARCH_QUERY),
+        EMAILDOMAIN(MetricsListener.Operation.SEARCH_QUERY);
+
+        // the operation reported to the metrics listener
+        private final MetricsListener.Operation operation;
+
+        private SearchByType(MetricsListener.Operation operation) {
+            this.operation = operation;
+        }
+    };
+
+    /**
+     * Formats in which an address book can be saved to a file. Files of any
+     * format are recognized automatically when they are read.
+     */
+    public enum FileFormat {
+        /**
+         * One line per contact with fields separated by " ;;". Fields must not
+         * contain ';' or line breaks.
+         */
+        TEXT,
+        /**
+         * Compact binary format with length-prefixed UTF-8 fields, which loads
+         * faster than TEXT and can hold any field value.
+         */
+        BINARY,
+        /**
+         * BINARY with a CRC-32 checksum per block of contacts, verified when
+         * the file is read.
+         */
+        CHECKSUMMED_BINARY,
+        /**
+         * Binary format with an index of the contacts, which can be opened
+         * without loading it by MappedAddressBook.open().
+         */
+        INDEXED
     };
 
+    /**
+     * Builds an AddressBook with optional features enabled. A plain
+     * AddressBook can be created by its public constructor, the Builder is
+     * only needed to turn on the optional features.
+     * 
+     * @author Hiral Mehta
+     * 
+     */
+    public static class Builder {
+
+        // Optional parameters
+        private boolean substringIndex = false;
+        private boolean phoneIndex = false;
+        private boolean fuzzyNameIndex = true;
+        private boolean queryFieldIndexes = false;
+        private MetricsListener metrics = MetricsListener.NONE;
+
+        /**
+         * Instantiates a Builder for an AddressBook with all optional features
+         * disabled, except for the fuzzy name index.
+         */
+        public Builder() {
+        }
+
+        /**
+         * Method to enable a trigram index for searchBySubString(). With the
+         * index, a substring search of three or more characters only has to
+         * look at the contacts sharing the rarest trigram of the search
+         * string, at the cost of extra memory and slower add/remove.
+         * 
+         * @param enabled
+         *            true to maintain the index
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder substringIndex(boolean enabled) {
+            this.substringIndex = enabled;
+            return this;
+        }
+
+        /**
+         * Method to enable an index of the normalized phone numbers for
+         * searchContactByNormalizedPhoneNumber() and
+         * searchContactByPhoneNumberSuffix(). With the index, these searches
+         * only look at the matching contacts instead of scanning the address
+         * book, at the cost of extra memory and slower add/remove.
+         * 
+         * @param enabled
+         *            true to maintain the index
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder normalizedPhoneIndex(boolean enabled) {
+            this.phoneIndex = enabled;
+            return this;
+        }
+
+        /**
+         * Method to enable or disable the index of the distinct first and last
+         * names for searchContactByFirstNameFuzzy() and
+         * searchContactByLastNameFuzzy(), which is enabled by default. With the
+         * index, these searches only compare the misspelled name to a small
+         * part of the distinct names. Without it, they compare it to every
+         * distinct name, which takes time in proportion to their number, but
+         * save the memory of the index and the time to add and remove contacts
+         * with a name not seen before.
+         * 
+         * @param enabled
+         *            true to maintain the index, false to do without it
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder fuzzyNameIndex(boolean enabled) {
+            this.fuzzyNameIndex = enabled;
+            return this;
+        }
+
+        /**
+         * Method to enable indexes of the city, state, zip code, country and
+         * email domain, the fields which are only searched by
+         * search(ContactQuery). Without them, the criteria of a query on these
+         * fields are checked on the contacts matched by its other criteria, or
+         * on every contact if it has no other criterion. With them, a query on
+         * these fields is planned like one on any other field, at the cost of
+         * extra memory and slower add/remove.
+         * 
+         * @param enabled
+         *            true to maintain the indexes
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder queryFieldIndexes(boolean enabled) {
+            this.queryFieldIndexes = enabled;
+            return this;
+        }
+
+        /**
+         * Method to set the listener which is notified of every search, save
+         * and read with its duration and the amount of work done, such as an
+         * InMemoryMetrics. By default nothing is measured.
+         * 
+         * @param listener
+         *            The MetricsListener to notify
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         * @throws IllegalArgumentException
+         *             If listener is null
+         */
+        public Builder metrics(MetricsListener listener) {
+            if (listener == null)
+                throw new IllegalArgumentException(
+                        "Metrics listener must not be null");
+            this.metrics = listener;
+            return this;
+        }
+
+        /**
+         * Builds the actual AddressBook object.
+         * 
+         * @return The actual AddressBook object
+         */
+        public AddressBook build() {
+            return new AddressBook(this);
+        }
+    }
+
     /**
      * Constructs a new address book
      */
     public AddressBook() {
-        addressBook = new ArrayList<ContactEntry>();
+        this(new Builder());
+    }
+
+    private AddressBook(Builder builder) {
+        addressBook = new ContactIdList();
+        indexes = new EnumMap<SearchByType, HashIndex>(SearchByType.class);
+        for (SearchByType type : SearchByType.values()) {
+            if (type == SearchByType.FIRSTNAME
+                    || type == SearchByType.LASTNAME)
+                indexes.put(type, new SortedIndex());
+            else if (type.operation == MetricsListener.Operation.SEARCH_QUERY) {
+                if (builder.queryFieldIndexes)
+                    indexes.put(type, new HashIndex());
+            } else if (type != SearchByType.SUBSTRING)
+                indexes.put(type, new HashIndex());
+        }
+        if (builder.substringIndex)
+            substringIndex = new NGramIndex();
+        if (builder.phoneIndex)
+            phoneIndex = new PhoneIndex();
+        if (builder.fuzzyNameIndex) {
+            fuzzyIndexes = new EnumMap<SearchByType, BkTree>(
+                    SearchByType.class);
+            fuzzyIndexes.put(SearchByType.FIRSTNAME, new BkTree());
+            fuzzyIndexes.put(SearchByType.LASTNAME, new BkTree());
+        }
+        phoneticIndex = new PhoneticIndex();
+        metrics = builder.metrics;
+        dirtySegments = new BitSet();
+    }
+
+    /*
+     * Creates a writable copy of the address book, contacts and indexes
+     * included, which can be changed independently of it.
+     */
+    private AddressBook(AddressBook other) {
+        addressBook = new ContactIdList(other.addressBook);
+        nextId = other.nextId;
+        indexes = new EnumMap<SearchByType, HashIndex>(SearchByType.class);
+        for (Map.Entry<SearchByType, HashIndex> index : other.indexes
+                .entrySet()) {
+            indexes.put(index.getKey(), index.getValue().copy());
+        }
+        if (other.substringIndex != null)
+            substringIndex = new NGramIndex(other.substringIndex);
+        if (other.phoneIndex != null)
+            phoneIndex = new PhoneIndex(other.phoneIndex);
+        if (other.fuzzyIndexes != null) {
+            fuzzyIndexes = new EnumMap<SearchByType, BkTree>(
+                    SearchByType.class);
+            for (Map.Entry<SearchByType, BkTree> index : other.fuzzyIndexes
+                    .entrySet()) {
+                fuzzyIndexes.put(index.getKey(), new BkTree(index.getValue()));
+            }
+        }
+        phoneticIndex = new PhoneticIndex(other.phoneticIndex);
+        metrics = other.metrics;
+        dirtySegments = (BitSet) other.dirtySegments.clone();
+        segmentDirectory = other.segmentDirectory;
+        segmentVersion = other.segmentVersion;
+    }
+
+    /*
+     * Returns a writable copy of the address book.
+     */
+    AddressBook copy() {
+        return new AddressBook(this);
+    }
+
+    /*
+     * Makes the address book read-only: from now on, adding or removing a
+     * contact throws UnsupportedOperationException.
+     */
+    void makeReadOnly() {
+        readOnly = true;
+    }
+
+    private void checkWritable() {
+        if (readOnly)
+            throw new UnsupportedOperationException("Address book is read-only");
+    }
+
+    /*
+     * Returns whether the contact can be added, which it can unless it is
+     * null or lacks one of the required name and phone number. This is not
+     * part of the API.
+     */
+    static boolean isAcceptable(ContactEntry contact) {
+        return contact != null && contact.getName() != null
+                && contact.getPhoneNumber() != null;
     }
 
     /**
      * Adds an entry to the address book. If an entry with same parameters
      * exists, the address book will store duplicates of the same contact.
+     * Entries which lack one of the required name and phone number are
+     * rejected and not added.
      * 
      * @param contact
      *            An object of ContactEntry to be added
      * @return true if the contact gets saved successfully <br>
-     *         false if contact is null
+     *         false if contact is null or is rejected
+     * @throws UnsupportedOperationException
+     *             If the address book is a read-only snapshot
      */
     public boolean addContactEntry(ContactEntry contact) {
-        if (contact == null)
-            return false;
-        return addressBook.add(contact);
+        return addContactEntryWithId(contact) >= 0;
+    }
+
+    /**
+     * Adds an entry to the address book like addContactEntry(), and returns the
+     * id assigned to it. The id identifies this very entry for as long as it
+     * stays in the address book, even if equal entries are added or removed,
+     * and is never reused for another entry of this address book.
+     * 
+     * @param contact
+     *            An object of ContactEntry to be added
+     * @return the id of the added entry, a non-negative number <br>
+     *         -1 if contact is null or is rejected
+     * @throws UnsupportedOperationException
+     *             If the address book is a read-only snapshot
+     */
+    public long addContactEntryWithId(ContactEntry contact) {
+        checkWritable();
+        if (!isAcceptable(contact))
+            return -1;
+        long id = nextId++;
+        addressBook.add(id, contact);
+        markDirty(id);
+        if (fuzzyIndexes != null)
+            addFuzzyKeys(contact);
+        for (Map.Entry<SearchByType, HashIndex> index : indexes.entrySet()) {
+            index.getValue().add(indexKey(index.getKey(), contact), id, contact);
+        }
+        if (substringIndex != null)
+            substringIndex.add(id, contact);
+        if (phoneIndex != null)
+            phoneIndex.add(id, contact);
+        phoneticIndex.add(id, contact);
+        return id;
+    }
+
+    /**
+     * Adds all the given entries to the address book, in order, as
+     * addContactEntry() would one by one, but faster: the storage is grown once
+     * for the whole batch, and each index is then updated in a single pass
+     * over the batch. Entries which are null or lack one of the required name
+     * and phone number are rejected and not added.
+     * 
+     * @param contacts
+     *            The ContactEntry objects to be added
+     * @return the number of entries rejected
+     * @throws UnsupportedOperationException
+     *             If the address book is a read-only snapshot
+     */
+    public int addAll(Collection<ContactEntry> contacts) {
+        checkWritable();
+        long firstId = nextId;
+        addressBook.ensureCapacity(contacts.size());
+        List<ContactEntry> added = new ArrayList<ContactEntry>(contacts.size());
+        for (ContactEntry contact : contacts) {
+            if (!isAcceptable(contact))
+                continue;
+            markDirty(nextId);
+            addressBook.add(nextId++, contact);
+            added.add(contact);
+        }
+
+        if (fuzzyIndexes != null) {
+            for (ContactEntry contact : added) {
+                addFuzzyKeys(contact);
+            }
+        }
+        for (Map.Entry<SearchByType, HashIndex> index : indexes.entrySet()) {
+            long id = firstId;
+            for (ContactEntry contact : added) {
+                index.getValue().add(indexKey(index.getKey(), contact), id++,
+                        contact);
+            }
+        }
+        if (substringIndex != null) {
+            long id = firstId;
+            for (ContactEntry contact : added) {
+                substringIndex.add(id++, contact);
+            }
+        }
+        if (phoneIndex != null) {
+            long id = firstId;
+            for (ContactEntry contact : added) {
+                phoneIndex.add(id++, contact);
+            }
+        }
+        long id = firstId;
+        for (ContactEntry contact : added) {
+            phoneticIndex.add(id++, contact);
+        }
+        return contacts.size() - added.size();
+    }
+
+    /**
+     * Adds all the entries of the stream to the address book, in order. Same
+     * as addAll(Collection), the stream is consumed before any entry is added.
+     * 
+     * @param contacts
+     *            The ContactEntry objects to be added
+     * @return the number of entries rejected
+     * @throws UnsupportedOperationException
+     *             If the address book is a read-only snapshot
+     */
+    public int addAll(Stream<ContactEntry> contacts) {
+        checkWritable();
+        return addAll(contacts.collect(Collectors.<ContactEntry> toList()));
     }
 
     /**
@@ -65,11 +517,148 @@ public class AddressBook {
      *            An object of ContactEntry to be removed
      * @return true if the contact is removed successfully <br>
      *         false if contact is null
+     * @throws UnsupportedOperationException
+     *             If the address book is a read-only snapshot
      */
     public boolean removeContactEntry(ContactEntry contact) {
+        checkWritable();
         if (contact == null)
             return false;
-        return addressBook.remove(contact);
+        long id = getContactId(contact);
+        return id >= 0 && removeContactEntryById(id);
+    }
+
+    /**
+     * Removes the entry with the given id from the address book, in time
+     * logarithmic in the size of the address book and of the indexes.
+     * 
+     * @param id
+     *            Id of the entry, as returned by addContactEntryWithId() or
+     *            getContactId()
+     * @return true if the entry is removed successfully <br>
+     *         false if there is no entry with that id
+     * @throws UnsupportedOperationException
+     *             If the address book is a read-only snapshot
+     */
+    public boolean removeContactEntryById(long id) {
+        checkWritable();
+        ContactEntry removed = addressBook.remove(id);
+        if (removed == null)
+            return false;
+        markDirty(id);
+        for (Map.Entry<SearchByType, HashIndex> index : indexes.entrySet()) {
+            index.getValue().remove(indexKey(index.getKey(), removed), id);
+        }
+        if (substringIndex != null)
+            substringIndex.remove(id, removed);
+        if (phoneIndex != null)
+            phoneIndex.remove(id, removed);
+        if (fuzzyIndexes != null)
+            removeFuzzyKeys(removed);
+        phoneticIndex.remove(id, removed);
+        return true;
+    }
+
+    /**
+     * Removes the first occurrence of every given entry from the address book,
+     * as removeContactEntry() would one by one. An entry given twice removes
+     * two equal entries. The storage is compacted at most once, whatever the
+     * number of entries removed.
+     * 
+     * @param contacts
+     *            The ContactEntry objects to be removed
+     * @return the number of entries removed
+     * @throws UnsupportedOperationException
+     *             If the address book is a read-only snapshot
+     */
+    public int removeAll(Collection<ContactEntry> contacts) {
+        checkWritable();
+        // the ids are picked first, an entry given again picking the next
+        // equal entry after the one picked for it before
+        Map<ContactEntry, Long> picked = new HashMap<ContactEntry, Long>();
+        long[] ids = new long[contacts.size()];
+        int count = 0;
+        for (ContactEntry contact : contacts) {
+            if (contact == null)
+                continue;
+            Long previous = picked.get(contact);
+            long id = idOf(contact, (previous == null) ? 0 : previous + 1);
+            if (id < 0)
+                continue;
+            picked.put(contact, id);
+            ids[count++] = id;
+        }
+        if (count == 0)
+            return 0;
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+
+        ContactEntry[] removed = new ContactEntry[count];
+        for (int i = 0; i < count; i++) {
+            removed[i] = addressBook.get(ids[i]);
+            markDirty(ids[i]);
+        }
+        addressBook.removeAll(ids);
+        String[] keys = new String[count];
+        for (Map.Entry<SearchByType, HashIndex> index : indexes.entrySet()) {
+            for (int i = 0; i < count; i++) {
+                keys[i] = indexKey(index.getKey(), removed[i]);
+            }
+            index.getValue().removeAll(keys, ids, count);
+        }
+        if (substringIndex != null)
+            substringIndex.removeAll(ids, removed);
+        if (phoneIndex != null)
+            phoneIndex.removeAll(ids, removed);
+        if (fuzzyIndexes != null) {
+            for (ContactEntry contact : removed) {
+                removeFuzzyKeys(contact);
+            }
+        }
+        phoneticIndex.removeAll(ids, removed);
+        return count;
+    }
+
+    /**
+     * Returns the entry with the given id.
+     * 
+     * @param id
+     *            Id of the entry
+     * @return the entry with that id <br>
+     *         null if there is no entry with that id
+     */
+    public ContactEntry getContactEntryById(long id) {
+        return addressBook.get(id);
+    }
+
+    /**
+     * Returns the id of the first entry of the address book equal to the given
+     * one, which is the entry removeContactEntry() would remove.
+     * 
+     * @param contact
+     *            An object of ContactEntry
+     * @return the id of the first equal entry <br>
+     *         -1 if there is none or contact is null
+     */
+    public long getContactId(ContactEntry contact) {
+        if (contact == null)
+            return -1;
+        return idOf(contact, 0);
+    }
+
+    /*
+     * Returns the id of the first entry equal to the contact whose id is at
+     * least from, or -1 if there is none.
+     */
+    private long idOf(ContactEntry contact, long from) {
+        String key = indexKey(SearchByType.NAME, contact);
+        if (key == null) {
+            // not indexed by name
+            return addressBook.idOf(contact, from);
+        }
+        // equal contacts have equal names
+        ContactIdList bucket = indexes.get(SearchByType.NAME).bucket(key);
+        return (bucket == null) ? -1 : bucket.idOf(contact, from);
     }
 
     /**
@@ -86,6 +675,51 @@ public class AddressBook {
         return searchContact(SearchByType.SUBSTRING, searchString);
     }
 
+    /**
+     * Returns one page of the results of searchBySubString(String): the
+     * matching contacts are skipped up to offset, and at most limit contacts
+     * are returned. The search stops as soon as the page is full, so a broad
+     * search costs time in proportion to offset + limit rather than to the
+     * number of matches.
+     * 
+     * @param searchString
+     *            Substring to be searched
+     * @param offset
+     *            Number of matching contacts to skip
+     * @param limit
+     *            Maximum number of contacts to return
+     * @return A list of at most limit contacts whose parameters contains the
+     *         input substring
+     * @throws IllegalArgumentException
+     *             If offset or limit is negative
+     */
+    public List<ContactEntry> searchBySubString(String searchString,
+            int offset, int limit) {
+        return searchContact(SearchByType.SUBSTRING, searchString, offset,
+                limit);
+    }
+
+    /**
+     * Searches the address book for the substring like
+     * searchBySubString(String), but lazily: contacts are matched only as the
+     * returned stream is consumed, so that for instance
+     * streamBySubString(s).limit(20) stops scanning at the 20th match. The
+     * address book must not be changed until the stream has been consumed;
+     * snapshots of a ConcurrentAddressBook never change. Streamed searches
+     * are not reported to the metrics listener.
+     * 
+     * @param searchString
+     *            Substring to be searched
+     * @return A sequential Stream of the contacts whose parameters contains
+     *         the input substring, in the order they were added
+     */
+    public Stream<ContactEntry> streamBySubString(String searchString) {
+        Spliterator<ContactEntry> matches = Spliterators
+                .spliteratorUnknownSize(substringMatches(searchString),
+                        Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(matches, false);
+    }
+
     /**
      * Searches throughout the address book for the contact whose full name
      * matches the full name given as input.
@@ -98,6 +732,27 @@ public class AddressBook {
         return searchContact(SearchByType.NAME, name);
     }
 
+    /**
+     * Returns one page of the results of searchContactByFullName(ContactName):
+     * the matching contacts are skipped up to offset, and at most limit
+     * contacts are returned.
+     * 
+     * @param name
+     *            Full name of the person to be searched
+     * @param offset
+     *            Number of matching contacts to skip
+     * @param limit
+     *            Maximum number of contacts to return
+     * @return A list of at most limit contacts whose full name matched the
+     *         given input name
+     * @throws IllegalArgumentException
+     *             If offset or limit is negative
+     */
+    public List<ContactEntry> searchContactByFullName(ContactName name,
+            int offset, int limit) {
+        return searchContact(SearchByType.NAME, name, offset, limit);
+    }
+
     /**
      * Searches through out the address book for the contact whose first name
      * matches the first name given as input. This method is provided to
@@ -112,6 +767,27 @@ public class AddressBook {
         return searchContact(SearchByType.FIRSTNAME, name);
     }
 
+    /**
+     * Returns one page of the results of searchContactByFirstName(ContactName):
+     * the matching contacts are skipped up to offset, and at most limit
+     * contacts are returned.
+     * 
+     * @param name
+     *            First name of the person to be searched
+     * @param offset
+     *            Number of matching contacts to skip
+     * @param limit
+     *            Maximum number of contacts to return
+     * @return A list of at most limit contacts whose first name matched the
+     *         given input name
+     * @throws IllegalArgumentException
+     *             If offset or limit is negative
+     */
+    public List<ContactEntry> searchContactByFirstName(ContactName name,
+            int offset, int limit) {
+        return searchContact(SearchByType.FIRSTNAME, name, offset, limit);
+    }
+
     /**
      * Searches through out the address book for the contact whose last name
      * matches the last name given as input. To search for a part of the
@@ -125,6 +801,173 @@ public class AddressBook {
         return searchContact(SearchByType.LASTNAME, name);
     }
 
+    /**
+     * Returns one page of the results of searchContactByLastName(ContactName):
+     * the matching contacts are skipped up to offset, and at most limit
+     * contacts are returned.
+     * 
+     * @param name
+     *            Last name of the person to be searched
+     * @param offset
+     *            Number of matching contacts to skip
+     * @param limit
+     *            Maximum number of contacts to return
+     * @return A list of at most limit contacts whose last name matched the
+     *         given input name
+     * @throws IllegalArgumentException
+     *             If offset or limit is negative
+     */
+    public List<ContactEntry> searchContactByLastName(ContactName name,
+            int offset, int limit) {
+        return searchContact(SearchByType.LASTNAME, name, offset, limit);
+    }
+
+    /**
+     * Searches the address book for the contacts whose first name starts with
+     * the given prefix, ignoring case, such as the first names starting with
+     * "Jo" for a type-ahead. The search takes time logarithmic in the number
+     * of distinct first names plus the number of matches.
+     * 
+     * @param prefix
+     *            Beginning of the first names to be searched
+     * @return A list of contacts whose first name starts with the prefix,
+     *         sorted by first name ignoring case, and contacts with the same
+     *         first name in the order they were added
+     */
+    public List<ContactEntry> searchContactByFirstNamePrefix(String prefix) {
+        return searchSorted(SearchByType.FIRSTNAME,
+                MetricsListener.Operation.SEARCH_NAME_PREFIX, prefix, null, true);
+    }
+
+    /**
+     * Searches the address book for the contacts whose last name starts with
+     * the given prefix, ignoring case. Same as
+     * searchContactByFirstNamePrefix() for last names.
+     * 
+     * @param prefix
+     *            Beginning of the last names to be searched
+     * @return A list of contacts whose last name starts with the prefix, sorted
+     *         by last name ignoring case, and contacts with the same last name
+     *         in the order they were added
+     */
+    public List<ContactEntry> searchContactByLastNamePrefix(String prefix) {
+        return searchSorted(SearchByType.LASTNAME,
+                MetricsListener.Operation.SEARCH_NAME_PREFIX, prefix, null, true);
+    }
+
+    /**
+     * Searches the address book for the contacts whose first name lies in the
+     * given range, ignoring case. The range includes from and excludes to, so
+     * the first names between "A" and "C" are those starting with A or B.
+     * Names are compared character by character after case folding. The
+     * search takes time logarithmic in the number of distinct first names plus
+     * the number of matches.
+     * 
+     * @param from
+     *            Lowest first name of the range, or null for no lower bound
+     * @param to
+     *            First name above the range, or null for no upper bound
+     * @return A list of contacts whose first name lies in the range, sorted by
+     *         first name ignoring case, and contacts with the same first name
+     *         in the order they were added
+     */
+    public List<ContactEntry> searchContactByFirstNameRange(String from,
+            String to) {
+        return searchSorted(SearchByType.FIRSTNAME,
+                MetricsListener.Operation.SEARCH_NAME_RANGE, from, to, false);
+    }
+
+    /**
+     * Searches the address book for the contacts whose last name lies in the
+     * given range, ignoring case. Same as searchContactByFirstNameRange() for
+     * last names.
+     * 
+     * @param from
+     *            Lowest last name of the range, or null for no lower bound
+     * @param to
+     *            Last name above the range, or null for no upper bound
+     * @return A list of contacts whose last name lies in the range, sorted by
+     *         last name ignoring case, and contacts with the same last name in
+     *         the order they were added
+     */
+    public List<ContactEntry> searchContactByLastNameRange(String from,
+            String to) {
+        return searchSorted(SearchByType.LASTNAME,
+                MetricsListener.Operation.SEARCH_NAME_RANGE, from, to, false);
+    }
+
+    /**
+     * Searches the address book for the contacts whose first name is within
+     * the given edit distance of the given one, ignoring case, to find names
+     * despite typos: "Jonn" finds "John" and "Jon" at a distance of 1. The
+     * edit distance is the least number of characters to insert, delete or
+     * replace to turn one name into the other. The search uses the fuzzy name
+     * index, unless it was disabled by Builder.fuzzyNameIndex(), in which case
+     * it compares the name to every distinct first name. Contacts without a
+     * first name are never found.
+     * 
+     * @param firstName
+     *            First name of the person to be searched, possibly misspelled
+     * @param maxDistance
+     *            Largest edit distance of the first names to be found
+     * @return A list of contacts whose first name is within maxDistance of the
+     *         given one, sorted by distance, then by first name ignoring case,
+     *         and contacts with the same first name in the order they were
+     *         added
+     * @throws IllegalArgumentException
+     *             If maxDistance is negative
+     */
+    public List<ContactEntry> searchContactByFirstNameFuzzy(String firstName,
+            int maxDistance) {
+        return searchFuzzy(SearchByType.FIRSTNAME, firstName, maxDistance);
+    }
+
+    /**
+     * Searches the address book for the contacts whose last name is within
+     * the given edit distance of the given one, ignoring case. Same as
+     * searchContactByFirstNameFuzzy() for last names: "Tribiani" finds
+     * "Tribbiani" at a distance of 1.
+     * 
+     * @param lastName
+     *            Last name of the person to be searched, possibly misspelled
+     * @param maxDistance
+     *            Largest edit distance of the last names to be found
+     * @return A list of contacts whose last name is within maxDistance of the
+     *         given one, sorted by distance, then by last name ignoring case,
+     *         and contacts with the same last name in the order they were
+     *         added
+     * @throws IllegalArgumentException
+     *             If maxDistance is negative
+     */
+    public List<ContactEntry> searchContactByLastNameFuzzy(String lastName,
+            int maxDistance) {
+        return searchFuzzy(SearchByType.LASTNAME, lastName, maxDistance);
+    }
+
+    /**
+     * Searches the address book for the contacts with a first, middle or last
+     * name which sounds like the given name, such as a name heard on the
+     * phone: "Tribiani" finds "Tribbiani", and "Smyth" finds "Smith". Names
+     * sound alike when they have the same American Soundex code, which keeps
+     * the first letter and the sound of the next three consonants. Only the
+     * letters A to Z are taken into account. The codes of the names are
+     * indexed, so the search is a single hash lookup.
+     * 
+     * @param name
+     *            Name to be searched, as it sounds
+     * @return A list of contacts with a name which sounds like the given one,
+     *         empty if the name contains none of the letters A to Z
+     */
+    public List<ContactEntry> searchContactBySoundsLike(String name) {
+        long start = startTimer();
+        List<ContactEntry> output = phoneticIndex.get(name);
+        if (metrics != MetricsListener.NONE)
+            metrics.searchCompleted(
+                    MetricsListener.Operation.SEARCH_SOUNDS_LIKE,
+                    System.nanoTime() - start, output.size(), output.size());
+        return output;
+    }
+
     /**
      * Searches through out the address book for the contact whose phone number
      * matches the phone number provided as input. To search for a part of the
@@ -138,6 +981,110 @@ public class AddressBook {
         return searchContact(SearchByType.PHONENUMBER, number);
     }
 
+    /**
+     * Returns one page of the results of
+     * searchContactByPhoneNumber(PhoneNumber): the matching contacts are
+     * skipped up to offset, and at most limit contacts are returned.
+     * 
+     * @param number
+     *            Phone number to be searched
+     * @param offset
+     *            Number of matching contacts to skip
+     * @param limit
+     *            Maximum number of contacts to return
+     * @return A list of at most limit contacts whose phone number matched the
+     *         given number
+     * @throws IllegalArgumentException
+     *             If offset or limit is negative
+     */
+    public List<ContactEntry> searchContactByPhoneNumber(PhoneNumber number,
+            int offset, int limit) {
+        return searchContact(SearchByType.PHONENUMBER, number, offset, limit);
+    }
+
+    /**
+     * Searches the address book for the contacts whose phone number has the
+     * same digits as the given one, whatever its format: "555-1234" finds
+     * "5551234" and "55-51-234". A leading '+' has to match, so "+1-555-1234"
+     * does not find "1-555-1234". Numbers containing '*' or '#', or more than
+     * 18 digits, cannot be normalized and are only found by
+     * searchContactByPhoneNumber(). The search uses the index enabled by
+     * Builder.normalizedPhoneIndex(), or scans the address book without it.
+     * 
+     * @param number
+     *            Phone number to be searched
+     * @return A list of contacts whose phone number has the same digits as the
+     *         given number
+     */
+    public List<ContactEntry> searchContactByNormalizedPhoneNumber(
+            PhoneNumber number) {
+        long start = startTimer();
+        List<ContactEntry> output;
+        if (phoneIndex != null) {
+            output = phoneIndex.exact(number);
+        } else {
+            output = new ArrayList<ContactEntry>();
+            String digits = PhoneIndex.digits(number);
+            if (digits != null) {
+                long key = PhoneIndex.exactKey(digits,
+                        PhoneIndex.hasPlus(number));
+                for (ContactEntry contact : addressBook) {
+                    String other = PhoneIndex.digits(contact.getPhoneNumber());
+                    if (other != null
+                            && PhoneIndex.exactKey(other, PhoneIndex
+                                    .hasPlus(contact.getPhoneNumber())) == key)
+                        output.add(contact);
+                }
+            }
+        }
+        phoneSearchCompleted(MetricsListener.Operation.SEARCH_PHONE_NORMALIZED,
+                start, output);
+        return output;
+    }
+
+    /**
+     * Searches the address book for the contacts whose phone number ends with
+     * the given digits, such as the last 4 digits of a number, whatever the
+     * format of the number. '-' separators in the suffix are ignored. The
+     * search uses the index enabled by Builder.normalizedPhoneIndex(), or
+     * scans the address book without it.
+     * 
+     * @param suffix
+     *            Last digits of the phone number to be searched
+     * @return A list of contacts whose phone number ends with the given
+     *         digits, empty if the suffix contains no digits or other
+     *         characters than digits and '-'
+     */
+    public List<ContactEntry> searchContactByPhoneNumberSuffix(String suffix) {
+        long start = startTimer();
+        List<ContactEntry> output = new ArrayList<ContactEntry>();
+        String digits = (suffix == null) ? null : suffix.replace("-", "");
+        if (digits != null && !digits.isEmpty()
+                && digits.length() <= PhoneIndex.MAX_DIGITS
+                && PhoneIndex.isDigits(digits)) {
+            if (phoneIndex != null) {
+                output = phoneIndex.suffix(digits);
+            } else {
+                for (ContactEntry contact : addressBook) {
+                    String other = PhoneIndex.digits(contact.getPhoneNumber());
+                    if (other != null && other.endsWith(digits))
+                        output.add(contact);
+                }
+            }
+        }
+        phoneSearchCompleted(MetricsListener.Operation.SEARCH_PHONE_SUFFIX,
+                start, output);
+        return output;
+    }
+
+    private void phoneSearchCompleted(MetricsListener.Operation operation,
+            long start, List<ContactEntry> output) {
+        if (metrics != MetricsListener.NONE)
+            metrics.searchCompleted(operation, System.nanoTime() - start,
+                    (phoneIndex != null) ? output.size() : addressBook.size(),
+                    output.size());
+    }
+
     /**
      * Searches through out the address book for the contact whose Postal
      * Address matches the address given as input. To search for only substring
@@ -151,6 +1098,28 @@ public class AddressBook {
         return searchContact(SearchByType.POSTALADDRESS, address);
     }
 
+    /**
+     * Returns one page of the results of
+     * searchContactByPostalAddress(PostalAddress): the matching contacts are
+     * skipped up to offset, and at most limit contacts are returned.
+     * 
+     * @param address
+     *            Complete postal address of the person to be searched
+     * @param offset
+     *            Number of matching contacts to skip
+     * @param limit
+     *            Maximum number of contacts to return
+     * @return A list of at most limit contacts whose postal address matched the
+     *         given input
+     * @throws IllegalArgumentException
+     *             If offset or limit is negative
+     */
+    public List<ContactEntry> searchContactByPostalAddress(
+            PostalAddress address, int offset, int limit) {
+        return searchContact(SearchByType.POSTALADDRESS, address, offset,
+                limit);
+    }
+
     /**
      * Searches through out the address book for the contact whose email address
      * matches the email address given as input. To search for a part of the
@@ -164,6 +1133,27 @@ public class AddressBook {
         return searchContact(SearchByType.EMAILID, emailId);
     }
 
+    /**
+     * Returns one page of the results of
+     * searchContactByEmailAddress(EmailAddress): the matching contacts are
+     * skipped up to offset, and at most limit contacts are returned.
+     * 
+     * @param emailId
+     *            Complete email address of the person to be searched
+     * @param offset
+     *            Number of matching contacts to skip
+     * @param limit
+     *            Maximum number of contacts to return
+     * @return A list of at most limit contacts whose email address matched the
+     *         given input
+     * @throws IllegalArgumentException
+     *             If offset or limit is negative
+     */
+    public List<ContactEntry> searchContactByEmailAddress(EmailAddress emailId,
+            int offset, int limit) {
+        return searchContact(SearchByType.EMAILID, emailId, offset, limit);
+    }
+
     /**
      * Searches through out the address book for the contact whose saved note
      * matches the note given as input. To search for a part of the note, use
@@ -177,10 +1167,154 @@ public class AddressBook {
         return searchContact(SearchByType.NOTE, note);
     }
 
+    /**
+     * Returns one page of the results of searchContactByNote(String): the
+     * matching contacts are skipped up to offset, and at most limit contacts
+     * are returned.
+     * 
+     * @param note
+     *            Note of the person to be searched
+     * @param offset
+     *            Number of matching contacts to skip
+     * @param limit
+     *            Maximum number of contacts to return
+     * @return A list of at most limit contacts whose note matched the given
+     *         input
+     * @throws IllegalArgumentException
+     *             If offset or limit is negative
+     */
+    public List<ContactEntry> searchContactByNote(String note,
+            int offset, int limit) {
+        return searchContact(SearchByType.NOTE, note, offset, limit);
+    }
+
+    /**
+     * Searches the address book for the contacts matching every criterion of
+     * the query. The query is planned from the indexes: the criterion matched
+     * by the fewest contacts is looked up first, and only its contacts are
+     * checked against the other criteria, so a query runs about as fast as its
+     * most selective criterion alone. Criteria on the city, state, zip code,
+     * country and email domain have no index unless enabled by
+     * Builder.queryFieldIndexes(), so they never drive the query: their
+     * contacts are found by checking every contact matched by the other
+     * criteria, or every contact of the address book if there are none.
+     * 
+     * @param query
+     *            Criteria the contacts have to match
+     * @return A list of contacts matching the query, in the order they were
+     *         added
+     */
+    public List<ContactEntry> search(ContactQuery query) {
+        return search(query, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns one page of the results of search(ContactQuery): the matching
+     * contacts are skipped up to offset, and at most limit contacts are
+     * returned.
+     * 
+     * @param query
+     *            Criteria the contacts have to match
+     * @param offset
+     *            Number of matching contacts to skip
+     * @param limit
+     *            Maximum number of contacts to return
+     * @return A list of at most limit contacts matching the query
+     * @throws IllegalArgumentException
+     *             If offset or limit is negative
+     */
+    public List<ContactEntry> search(ContactQuery query, int offset, int limit) {
+        if (offset < 0 || limit < 0)
+            throw new IllegalArgumentException(
+                    "Offset and limit must not be negative");
+        long start = startTimer();
+        List<ContactIdList> buckets = new ArrayList<ContactIdList>();
+        Map<SearchByType, String> filters = new EnumMap<SearchByType, String>(
+                SearchByType.class);
+        boolean empty = !addBucket(buckets, filters, SearchByType.NAME,
+                SearchKeys.nameKey(query.getName()))
+                || !addBucket(buckets, filters, SearchByType.FIRSTNAME,
+                        criterionKey(query.getFirstName()))
+                || !addBucket(buckets, filters, SearchByType.LASTNAME,
+                        criterionKey(query.getLastName()))
+                || !addBucket(buckets, filters, SearchByType.PHONENUMBER,
+                        SearchKeys.phoneKey(query.getPhoneNumber()))
+                || !addBucket(buckets, filters, SearchByType.POSTALADDRESS,
+                        SearchKeys.postalAddressKey(query.getPostalAddress()))
+                || !addBucket(buckets, filters, SearchByType.CITY,
+                        criterionKey(query.getCity()))
+                || !addBucket(buckets, filters, SearchByType.STATE,
+                        criterionKey(query.getState()))
+                || !addBucket(buckets, filters, SearchByType.ZIP,
+                        criterionKey(query.getZip()))
+                || !addBucket(buckets, filters, SearchByType.COUNTRY,
+                        criterionKey(query.getCountry()))
+                || !addBucket(buckets, filters, SearchByType.EMAILID,
+                        SearchKeys.emailKey(query.getEmailId()))
+                || !addBucket(buckets, filters, SearchByType.EMAILDOMAIN,
+                        criterionKey(SearchKeys.domainOf(query
+                                .getEmailDomain())))
+                || !addBucket(buckets, filters, SearchByType.NOTE,
+                        criterionKey(query.getNote()));
+
+        List<ContactEntry> output;
+        int scanned;
+        if (empty) {
+            output = new ArrayList<ContactEntry>();
+            scanned = 0;
+        } else {
+            // the most selective criterion drives, the others filter
+            ContactIdList driver = addressBook;
+            for (ContactIdList bucket : buckets) {
+                if (bucket.size() < driver.size())
+                    driver = bucket;
+            }
+            buckets.remove(driver);
+            ContactIdList.Intersection matches = driver.intersection(buckets
+                    .toArray(new ContactIdList[buckets.size()]));
+            output = page(filters.isEmpty() ? matches : new QueryMatches(
+                    matches, filters), offset, limit);
+            scanned = matches.scanned();
+        }
+        if (metrics != MetricsListener.NONE)
+            metrics.searchCompleted(MetricsListener.Operation.SEARCH_QUERY,
+                    System.nanoTime() - start, scanned, output.size());
+        return output;
+    }
+
+    /*
+     * Adds the index bucket of the key of a criterion of a query to the
+     * buckets to intersect, or the key to the filters if the type has no
+     * index. Returns false if no contact matches the criterion, and true if
+     * some do or may, or the criterion is not set, in which case the key is
+     * null.
+     */
+    private boolean addBucket(List<ContactIdList> buckets,
+            Map<SearchByType, String> filters, SearchByType type, String key) {
+        if (key == null)
+            return true;
+        HashIndex index = indexes.get(type);
+        if (index == null) {
+            filters.put(type, key);
+            return true;
+        }
+        ContactIdList bucket = index.bucket(key);
+        if (bucket == null)
+            return false;
+        buckets.add(bucket);
+        return true;
+    }
+
+    private static String criterionKey(String criterion) {
+        return (criterion == null) ? null : SearchKeys.fold(criterion);
+    }
+
     /**
      * Saves the address book which is currently in memory, to a file in disk
-     * storage. If the file specified by the user already exists the its
-     * contents are first deleted and then contacts are written to a fresh file.
+     * storage. The contacts are first written to a temporary file next to the
+     * target, which is forced to the disk and then renamed over the target, so
+     * that a reader of the file never sees a partially written address book.
+     * The file is encoded with the platform's default charset.
      * 
      * @param file
      *            File object representing file to be saved
@@ -188,25 +1322,262 @@ public class AddressBook {
      *             If the file could not be written
      */
     public void save(File file) throws IOException {
-        if (file.exists()) {
-            file.delete();
+        save(file, Charset.defaultCharset());
+    }
+
+    /**
+     * Saves the address book which is currently in memory, to a file in disk
+     * storage encoded with the given charset. The file is replaced atomically
+     * as described in save(File).
+     * 
+     * @param file
+     *            File object representing file to be saved
+     * @param charset
+     *            Charset to encode the file with
+     * @throws IOException
+     *             If the file could not be written
+     */
+    public void save(File file, Charset charset) throws IOException {
+        save(file, FileFormat.TEXT, charset);
+    }
+
+    /**
+     * Saves the address book which is currently in memory, to a file in disk
+     * storage in the given format. Text is encoded with the platform's default
+     * charset, binary formats always use UTF-8. The file is replaced
+     * atomically as described in save(File).
+     * 
+     * @param file
+     *            File object representing file to be saved
+     * @param format
+     *            Format of the file
+     * @throws IOException
+     *             If the file could not be written
+     */
+    public void save(File file, FileFormat format) throws IOException {
+        save(file, format, Charset.defaultCharset());
+    }
+
+    /**
+     * Saves the address book which is currently in memory, to a file in disk
+     * storage in a binary format, with every block of contacts compressed by
+     * the given codec. Blocks are compressed independently, so that the file
+     * can be read, streamed and read in parallel like an uncompressed one, at
+     * the cost of decompressing it. The file is replaced atomically as
+     * described in save(File).
+     * 
+     * @param file
+     *            File object representing file to be saved
+     * @param format
+     *            Format of the file, BINARY or CHECKSUMMED_BINARY
+     * @param codec
+     *            Codec to compress the blocks with, such as BlockCodec.DEFLATE
+     * @throws IOException
+     *             If the file could not be written
+     * @throws IllegalArgumentException
+     *             If the format is not a binary format with blocks, or the
+     *             codec is null
+     */
+    public void save(File file, FileFormat format, BlockCodec codec)
+            throws IOException {
+        if (format != FileFormat.BINARY
+                && format != FileFormat.CHECKSUMMED_BINARY)
+            throw new IllegalArgumentException(
+                    "Only BINARY and CHECKSUMMED_BINARY can be compressed");
+        if (codec == null)
+            throw new IllegalArgumentException("Codec must not be null");
+        long start = startTimer();
+        long bytesWritten = write(file, format, Charset.defaultCharset(),
+                codec, this.addressBook);
+        if (metrics != MetricsListener.NONE)
+            metrics.saveCompleted(System.nanoTime() - start, bytesWritten);
+    }
+
+    /**
+     * Saves the address book to a directory in disk storage, split into
+     * segments of consecutive contacts with one file each and a manifest
+     * listing them. The address book keeps track of the segments it changes,
+     * so that saving it again to the same directory only writes the segments
+     * changed since, and takes time in proportion to the changes rather than
+     * to the size of the address book. The first save to a directory, or a
+     * save after the directory was written by something else, writes every
+     * segment. The manifest is replaced atomically once the new segments are
+     * written, so that a reader of the directory sees either the previous
+     * save or this one, and the segments no longer listed are then deleted.
+     * 
+     * @param directory
+     *            Directory to save the address book to, created if it does
+     *            not exist
+     * @throws IOException
+     *             If the directory could not be written
+     * @throws UnsupportedOperationException
+     *             If the address book is a read-only snapshot, which
+     *             ConcurrentAddressBook.saveSegments() saves instead
+     */
+    public void saveSegments(File directory) throws IOException {
+        checkWritable();
+        writeSegments(directory);
+    }
+
+    /*
+     * Saves the address book to a directory as described in saveSegments(),
+     * even if it is read-only. It updates the segments changed since the last
+     * save, so ConcurrentAddressBook calls it on a snapshot under its write
+     * lock only. This is not part of the API.
+     */
+    void writeSegments(File directory) throws IOException {
+        long start = startTimer();
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create directory " + directory);
+        File canonical = directory.getCanonicalFile();
+        SegmentedFormat.Manifest previous;
+        try {
+            previous = SegmentedFormat.Manifest.read(canonical);
+        } catch (IOException e) {
+            // a damaged manifest is simply replaced
+            previous = null;
+        }
+        // a save which would leave the packs mostly unused rewrites them all
+        boolean incremental = previous != null
+                && canonical.equals(segmentDirectory)
+                && previous.version() == segmentVersion
+                && !previous.mostlyGarbage(canonical);
+        long version = (previous == null) ? 1 : previous.version() + 1;
+
+        SegmentedFormat.Manifest manifest = new SegmentedFormat.Manifest(
+                version);
+        SegmentedFormat.PackWriter pack = new SegmentedFormat.PackWriter(
+                canonical, version);
+        long bytesWritten;
+        try {
+            long segments = (nextId + SegmentedFormat.SEGMENT_SIZE - 1)
+                    / SegmentedFormat.SEGMENT_SIZE;
+            for (long segment = 0; segment < segments; segment++) {
+                if (incremental && !dirtySegments.get((int) segment)) {
+                    SegmentedFormat.Segment unchanged = previous.get(segment);
+                    if (unchanged != null)
+                        manifest.add(unchanged);
+                    continue;
+                }
+                List<ContactEntry> contacts = addressBook.range(segment
+                        * SegmentedFormat.SEGMENT_SIZE, (segment + 1)
+                        * SegmentedFormat.SEGMENT_SIZE);
+                if (!contacts.isEmpty())
+                    pack.write(segment, contacts, manifest);
+            }
+        } finally {
+            bytesWritten = pack.close();
         }
-        file.createNewFile();
+        bytesWritten += manifest.write(canonical);
+        SegmentedFormat.deleteUnlisted(canonical, manifest);
+
+        dirtySegments.clear();
+        segmentDirectory = canonical;
+        segmentVersion = version;
+        if (metrics != MetricsListener.NONE)
+            metrics.saveCompleted(System.nanoTime() - start, bytesWritten);
+    }
+
+    private void save(File file, FileFormat format, Charset charset)
+            throws IOException {
+        long start = startTimer();
+        long bytesWritten = write(file, format, charset, null,
+                this.addressBook);
+        if (metrics != MetricsListener.NONE)
+            metrics.saveCompleted(System.nanoTime() - start, bytesWritten);
+    }
 
-        FileOutputStream fileout = new FileOutputStream(file);
-        OutputStreamWriter out = new OutputStreamWriter(fileout);
+    /*
+     * Returns a list of the contacts in the order they were added, which does
+     * not change with the address book.
+     */
+    List<ContactEntry> contacts() {
+        return new ArrayList<ContactEntry>(addressBook);
+    }
 
-        for (ContactEntry contact : this.addressBook) {
-            String tmp = ConversionHelper.buildStringFromContact(contact);
-            out.write(tmp);
+    /*
+     * Writes the contacts to the file in the given format, replacing the file
+     * atomically as described in save(File), and returns the number of bytes
+     * written. The blocks of a binary format are compressed with the codec
+     * unless it is null.
+     */
+    static long write(File file, FileFormat format, Charset charset,
+            BlockCodec codec, Collection<ContactEntry> contacts)
+            throws IOException {
+        long bytesWritten;
+        Path target = file.toPath().toAbsolutePath();
+        // created like any other file, so it gets the default permissions
+        Path temp = target.resolveSibling("." + target.getFileName() + "."
+                + System.nanoTime() + ".tmp");
+        FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            try {
+                OutputStream out = new BufferedOutputStream(
+                        Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+                if (format == FileFormat.TEXT) {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(
+                            out, charset), WRITE_BUFFER_SIZE);
+                    for (ContactEntry contact : contacts) {
+                        ConversionHelper.appendContact(writer, contact);
+                    }
+                    writer.flush();
+                } else if (format == FileFormat.INDEXED) {
+                    IndexedFormat.write(out, contacts);
+                } else {
+                    BinaryFormat.write(out, contacts,
+                            format == FileFormat.CHECKSUMMED_BINARY, codec);
+                }
+                out.flush();
+                channel.force(true);
+                bytesWritten = channel.size();
+            } finally {
+                channel.close();
+            }
+            moveAtomically(temp, target);
+            forceDirectory(target.getParent());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return bytesWritten;
+    }
+
+    /*
+     * Renames source over target, atomically if the file system supports it.
+     */
+    static void moveAtomically(Path source, Path target)
+            throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
+    /*
+     * Forces the entries of the directory to the disk, so that a file created
+     * in it or renamed into it is still there after a crash, rather than only
+     * its contents. Windows cannot open a directory, but makes a rename
+     * durable once it returns, so the directory is not forced there.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        if (System.getProperty("os.name", "").startsWith("Windows"))
+            return;
+        FileChannel channel = FileChannel.open(directory,
+                StandardOpenOption.READ);
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
         }
-        out.close();
     }
 
     /**
      * Reads address book from a file in disk storage to an object in memory. It
-     * requires that the file exists.
+     * requires that the file exists. The format of the file is detected
+     * automatically, a text file is decoded with the platform's default
+     * charset.
      * 
      * @param file
      *            Name of the file which contains address book in raw format
@@ -218,85 +1589,505 @@ public class AddressBook {
      */
     public List<ContactEntry> read(File file) throws FileNotFoundException,
             IOException {
-        FileInputStream filein = new FileInputStream(file);
-        InputStreamReader in = new InputStreamReader(filein);
-        
-        Scanner scanner = new Scanner(in);
+        return read(file, Charset.defaultCharset());
+    }
 
+    /**
+     * Reads address book from a file in disk storage to an object in memory,
+     * decoding a text file with the given charset. It requires that the file
+     * exists. The format of the file is detected automatically.
+     * 
+     * @param file
+     *            Name of the file which contains address book in raw format
+     * @param charset
+     *            Charset a text file was written with
+     * @return A List of ContactEntry objects read from the file given as input
+     * @throws FileNotFoundException
+     *             If the file does not exist
+     * @throws IOException
+     *             If the file could not be read
+     */
+    public List<ContactEntry> read(File file, Charset charset)
+            throws FileNotFoundException, IOException {
+        long start = startTimer();
         List<ContactEntry> contacts = new ArrayList<ContactEntry>();
+        ContactReader reader = ContactReader.open(file, charset);
+        try {
+            while (reader.hasNext()) {
+                contacts.add(reader.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            metrics.parseFailed();
+            throw e;
+        } finally {
+            reader.close();
+        }
+        readCompleted(start, file, contacts);
+        return contacts;
+    }
 
-        while (scanner.hasNextLine()) {
-            StringTokenizer tmp = new StringTokenizer(scanner.nextLine(), ";;");
+    /**
+     * Reads address book from a file in disk storage to an object in memory
+     * like read(File, Charset), but parses the file on several threads. A
+     * text file is split into chunks of whole lines, a file in BINARY or
+     * CHECKSUMMED_BINARY format, compressed or not, into chunks of whole
+     * blocks. The chunks are parsed independently, and the contacts are
+     * returned in file order. INDEXED files, and text files in a charset
+     * where a newline is not the single byte 0x0A, are read on the calling
+     * thread only.
+     * 
+     * @param file
+     *            Name of the file which contains address book in raw format
+     * @param charset
+     *            Charset a text file was written with
+     * @param parallelism
+     *            Number of threads to parse the file with
+     * @return A List of ContactEntry objects read from the file given as input
+     * @throws FileNotFoundException
+     *             If the file does not exist
+     * @throws IOException
+     *             If the file could not be read
+     * @throws IllegalArgumentException
+     *             If parallelism is less than 1
+     */
+    public List<ContactEntry> readParallel(File file, Charset charset,
+            int parallelism) throws FileNotFoundException, IOException {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive");
+        long start = startTimer();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            boolean text = ParallelLoader.canSplit(channel, charset);
+            if (parallelism > 1
+                    && (text || ParallelLoader.isBinary(channel))) {
+                List<ContactEntry> contacts;
+                try {
+                    contacts = text ? ParallelLoader.read(channel, charset,
+                            parallelism) : ParallelLoader.readBinary(channel,
+                            parallelism);
+                } catch (RuntimeException e) {
+                    metrics.parseFailed();
+                    throw e;
+                }
+                readCompleted(start, file, contacts);
+                return contacts;
+            }
+        } finally {
+            in.close();
+        }
+        return read(file, charset);
+    }
 
-            ContactEntry contact = ConversionHelper.buildContact(tmp);
-            contacts.add(contact);
+    /**
+     * Reads the contacts of a file in disk storage lazily, one line at a time,
+     * so that the memory needed does not depend on the size of the file. The
+     * returned stream holds the file open and has to be closed, preferably by
+     * a try-with-resources statement. It requires that the file exists. The
+     * format of the file is detected automatically. Reads through a stream are
+     * not reported to the metrics listener.
+     * 
+     * @param file
+     *            Name of the file which contains address book in raw format
+     * @param charset
+     *            Charset a text file was written with
+     * @return A sequential Stream of the ContactEntry objects in file order
+     * @throws FileNotFoundException
+     *             If the file does not exist
+     * @throws IOException
+     *             If the file could not be opened
+     * @throws UncheckedIOException
+     *             If the file could not be read while consuming the stream
+     */
+    public Stream<ContactEntry> readStream(File file, Charset charset)
+            throws FileNotFoundException, IOException {
+        final ContactReader reader = ContactReader.open(file, charset);
+        Spliterator<ContactEntry> contacts = Spliterators.spliteratorUnknownSize(
+                reader, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(contacts, false).onClose(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
 
+    /**
+     * Reads an address book saved by saveSegments() from its directory, as
+     * listed by the manifest of the last complete save.
+     * 
+     * @param directory
+     *            Directory the address book was saved to
+     * @return A List of ContactEntry objects in the order they were saved
+     * @throws FileNotFoundException
+     *             If the directory holds no saved address book
+     * @throws IOException
+     *             If a segment could not be read, or does not hold the
+     *             number of contacts listed in the manifest
+     */
+    public List<ContactEntry> readSegments(File directory)
+            throws FileNotFoundException, IOException {
+        long start = startTimer();
+        SegmentedFormat.Manifest manifest = SegmentedFormat.Manifest
+                .read(directory);
+        if (manifest == null)
+            throw new FileNotFoundException("No address book in " + directory);
+        List<ContactEntry> contacts;
+        try {
+            contacts = SegmentedFormat.read(directory, manifest);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            metrics.parseFailed();
+            throw e;
         }
-
-        scanner.close();
-        in.close();
+        long bytesRead = 0;
+        for (SegmentedFormat.Segment segment : manifest.segments()) {
+            bytesRead += segment.length;
+        }
+        if (metrics != MetricsListener.NONE)
+            metrics.readCompleted(System.nanoTime() - start, bytesRead,
+                    contacts.size());
         return contacts;
-
     }
 
     /*
      * This search method serves as a helper method to the public search
      * methods. It takes the common code out of the above functions to keep the
      * code DRY. It is again a design decision to provide more flexibility to
-     * the user to let them search by any common parameter.
+     * the user to let them search by any common parameter. Exact-match
+     * searches are answered from the hash index of their type.
      */
     private <T> List<ContactEntry> searchContact(SearchByType type, T entry) {
-        List<ContactEntry> output = new ArrayList<ContactEntry>();
+        return searchContact(type, entry, 0, Integer.MAX_VALUE);
+    }
 
-        for (ContactEntry e : addressBook) {
-            switch (type) {
-            case NAME: {
-                if (e.getName().equals(entry))
-                    output.add(e);
-                break;
-            }
-            case FIRSTNAME: {
-                if (e.getName().getFirstName().equals(entry))
-                    output.add(e);
-                break;
-            }
-            case LASTNAME: {
-                if (e.getName().getLastName().equals(entry))
-                    output.add(e);
-                break;
-            }
-            case PHONENUMBER: {
-                if (e.getPhoneNumber().equals(entry))
-                    output.add(e);
-                break;
-            }
-            case POSTALADDRESS: {
-                if (e.getPostalAddress().equals(entry))
-                    output.add(e);
-                break;
+    /*
+     * Returns the page of the results of searchContact(type, entry) which
+     * starts after offset matches and holds at most limit contacts. Matches
+     * past the page are not looked for.
+     */
+    private <T> List<ContactEntry> searchContact(SearchByType type, T entry,
+            int offset, int limit) {
+        if (offset < 0 || limit < 0)
+            throw new IllegalArgumentException(
+                    "Offset and limit must not be negative");
+        long start = startTimer();
+        List<ContactEntry> output;
+        int scanned;
+        if (type != SearchByType.SUBSTRING) {
+            ContactIdList bucket = null;
+            if (entry != null)
+                bucket = indexes.get(type).bucket(queryKey(type, entry));
+            if (bucket == null)
+                output = new ArrayList<ContactEntry>();
+            else if (offset == 0 && limit >= bucket.size())
+                output = new ArrayList<ContactEntry>(bucket);
+            else
+                output = page(bucket.iterator(), offset, limit);
+            // an index bucket holds exactly the matching contacts
+            scanned = offset + output.size();
+        } else {
+            SubstringMatches matches = substringMatches((String) entry);
+            output = page(matches, offset, limit);
+            scanned = matches.scanned;
+        }
+        if (metrics != MetricsListener.NONE)
+            metrics.searchCompleted(type.operation, System.nanoTime() - start,
+                    scanned, output.size());
+        return output;
+    }
+
+    /*
+     * Skips offset contacts of the iterator and returns the next limit ones,
+     * or fewer if the iterator runs out.
+     */
+    private static List<ContactEntry> page(Iterator<ContactEntry> matches,
+            int offset, int limit) {
+        for (int i = 0; i < offset && matches.hasNext(); i++) {
+            matches.next();
+        }
+        List<ContactEntry> output = new ArrayList<ContactEntry>(Math.min(
+                limit, 16));
+        while (output.size() < limit && matches.hasNext()) {
+            output.add(matches.next());
+        }
+        return output;
+    }
+
+    /*
+     * Substring searches scan the whole address book, or only the candidates
+     * of the trigram index if it is enabled.
+     */
+    private SubstringMatches substringMatches(String searchString) {
+        String lowerCase = searchString.toLowerCase();
+        ContactIdList candidates = null;
+        if (substringIndex != null)
+            candidates = substringIndex.candidates(lowerCase);
+        if (candidates == null)
+            candidates = addressBook;
+        return new SubstringMatches(candidates.iterator(), lowerCase);
+    }
+
+    /*
+     * Iterates lazily over the candidates which contain the search string,
+     * counting the candidates looked at.
+     */
+    private static class SubstringMatches implements Iterator<ContactEntry> {
+
+        private final Iterator<ContactEntry> candidates;
+        private final String searchString;
+        private ContactEntry next;
+        private int scanned;
+
+        private SubstringMatches(Iterator<ContactEntry> candidates,
+                String searchString) {
+            this.candidates = candidates;
+            this.searchString = searchString;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && candidates.hasNext()) {
+                ContactEntry candidate = candidates.next();
+                scanned++;
+                if (NGramIndex.searchableText(candidate).contains(searchString))
+                    next = candidate;
             }
-            case EMAILID: {
-                if (e.getEmailId().equals(entry))
-                    output.add(e);
-                break;
+            return next != null;
+        }
+
+        @Override
+        public ContactEntry next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ContactEntry match = next;
+            next = null;
+            return match;
+        }
+    }
+
+    /*
+     * Iterates lazily over the contacts matched by the indexed criteria of a
+     * query which also have the keys of its unindexed criteria.
+     */
+    private class QueryMatches implements Iterator<ContactEntry> {
+
+        private final Iterator<ContactEntry> candidates;
+        private final Map<SearchByType, String> filters;
+        private ContactEntry next;
+
+        private QueryMatches(Iterator<ContactEntry> candidates,
+                Map<SearchByType, String> filters) {
+            this.candidates = candidates;
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && candidates.hasNext()) {
+                ContactEntry candidate = candidates.next();
+                if (matchesAll(candidate))
+                    next = candidate;
             }
-            case NOTE: {
-                if (e.getNote().equalsIgnoreCase((String) entry))
-                    output.add(e);
-                break;
+            return next != null;
+        }
+
+        @Override
+        public ContactEntry next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ContactEntry match = next;
+            next = null;
+            return match;
+        }
+
+        private boolean matchesAll(ContactEntry candidate) {
+            for (Map.Entry<SearchByType, String> filter : filters.entrySet()) {
+                if (!filter.getValue().equals(
+                        indexKey(filter.getKey(), candidate)))
+                    return false;
             }
-            case SUBSTRING: {
-                String concatenatedContact = ConversionHelper
-                        .buildStringFromContact(e);
-                if (concatenatedContact.toLowerCase().contains(((String) entry).toLowerCase()))
-                    output.add(e);
-                break;
+            return true;
+        }
+    }
+
+    /*
+     * Helper method to the prefix and range searches, which are answered from
+     * the sorted index of the given type. A null prefix matches nothing.
+     */
+    private List<ContactEntry> searchSorted(SearchByType type,
+            MetricsListener.Operation operation, String from, String to,
+            boolean prefix) {
+        long start = startTimer();
+        SortedIndex index = (SortedIndex) indexes.get(type);
+        List<ContactEntry> output;
+        if (!prefix)
+            output = index.range((from == null) ? null : SearchKeys.fold(from),
+                    (to == null) ? null : SearchKeys.fold(to));
+        else if (from == null)
+            output = new ArrayList<ContactEntry>();
+        else
+            output = index.prefix(SearchKeys.fold(from));
+        if (metrics != MetricsListener.NONE)
+            metrics.searchCompleted(operation, System.nanoTime() - start,
+                    output.size(), output.size());
+        return output;
+    }
+
+    private List<ContactEntry> searchFuzzy(SearchByType type, String name,
+            int maxDistance) {
+        if (maxDistance < 0)
+            throw new IllegalArgumentException(
+                    "Maximum distance must not be negative");
+        long start = startTimer();
+        List<ContactEntry> output = new ArrayList<ContactEntry>();
+        SortedIndex index = (SortedIndex) indexes.get(type);
+        if (name != null) {
+            String key = SearchKeys.fold(name);
+            List<BkTree.Match> matches;
+            if (fuzzyIndexes != null) {
+                matches = fuzzyIndexes.get(type).search(key, maxDistance);
+            } else {
+                matches = new ArrayList<BkTree.Match>();
+                for (String other : index.keys()) {
+                    int distance = BkTree.distance(key, other,
+                            maxDistance);
+                    if (distance <= maxDistance && !other.isEmpty())
+                        matches.add(new BkTree.Match(other, distance));
+                }
+                BkTree.sort(matches);
             }
+            for (BkTree.Match match : matches) {
+                output.addAll(index.bucket(match.key));
             }
         }
+        if (metrics != MetricsListener.NONE)
+            metrics.searchCompleted(MetricsListener.Operation.SEARCH_NAME_FUZZY,
+                    System.nanoTime() - start, output.size(), output.size());
         return output;
     }
 
+    /*
+     * Adds the name keys of the contact to the fuzzy name indexes. Called
+     * before the contact is added to the name indexes, so that a key only has
+     * to be looked up in the tree when no contact has it yet.
+     */
+    private void addFuzzyKeys(ContactEntry contact) {
+        for (Map.Entry<SearchByType, BkTree> index : fuzzyIndexes.entrySet()) {
+            String key = indexKey(index.getKey(), contact);
+            if (key != null && !key.isEmpty()
+                    && indexes.get(index.getKey()).bucket(key) == null)
+                index.getValue().add(key);
+        }
+    }
+
+    /*
+     * Removes the name keys of the contact from the fuzzy name indexes if no
+     * contact has them any more. Called after the contact is removed from the
+     * name indexes.
+     */
+    private void removeFuzzyKeys(ContactEntry contact) {
+        for (Map.Entry<SearchByType, BkTree> index : fuzzyIndexes.entrySet()) {
+            String key = indexKey(index.getKey(), contact);
+            if (key != null && !key.isEmpty()
+                    && indexes.get(index.getKey()).bucket(key) == null)
+                index.getValue().remove(key);
+        }
+    }
+
+    /*
+     * Records that the segment of the id changed since the last
+     * saveSegments().
+     */
+    private void markDirty(long id) {
+        dirtySegments.set((int) (id / SegmentedFormat.SEGMENT_SIZE));
+    }
+
+    /*
+     * Returns the start time of an operation to be reported to the metrics
+     * listener. Without a listener the clock is not read at all.
+     */
+    private long startTimer() {
+        return (metrics == MetricsListener.NONE) ? 0 : System.nanoTime();
+    }
+
+    private void readCompleted(long start, File file,
+            List<ContactEntry> contacts) {
+        if (metrics != MetricsListener.NONE)
+            metrics.readCompleted(System.nanoTime() - start, file.length(),
+                    contacts.size());
+    }
+
+    /*
+     * Returns the key under which the contact is stored in the index of the
+     * given search type.
+     */
+    private String indexKey(SearchByType type, ContactEntry contact) {
+        ContactName name = contact.getName();
+        PostalAddress address = contact.getPostalAddress();
+        switch (type) {
+        case NAME:
+            return SearchKeys.nameKey(name);
+        case FIRSTNAME:
+            return (name == null) ? null : SearchKeys.fold(name.getFirstName());
+        case LASTNAME:
+            return (name == null) ? null : SearchKeys.fold(name.getLastName());
+        case PHONENUMBER:
+            return SearchKeys.phoneKey(contact.getPhoneNumber());
+        case POSTALADDRESS:
+            return SearchKeys.postalAddressKey(contact.getPostalAddress());
+        case EMAILID:
+            return SearchKeys.emailKey(contact.getEmailId());
+        case NOTE:
+            return SearchKeys.fold(contact.getNote());
+        case CITY:
+            return (address == null) ? null : SearchKeys.fold(address.getCity());
+        case STATE:
+            return (address == null) ? null : SearchKeys
+                    .fold(address.getState());
+        case ZIP:
+            return (address == null) ? null : SearchKeys.fold(address.getZip());
+        case COUNTRY:
+            return (address == null) ? null : SearchKeys.fold(address
+                    .getCountry());
+        case EMAILDOMAIN:
+            return SearchKeys.emailDomainKey(contact.getEmailId());
+        default:
+            throw new IllegalArgumentException("No index for " + type);
+        }
+    }
+
+    /*
+     * Returns the index key to look up for a search value of the given type.
+     */
+    private String queryKey(SearchByType type, Object entry) {
+        switch (type) {
+        case NAME:
+            return SearchKeys.nameKey((ContactName) entry);
+        case FIRSTNAME:
+            return SearchKeys.fold(((ContactName) entry).getFirstName());
+        case LASTNAME:
+            return SearchKeys.fold(((ContactName) entry).getLastName());
+        case PHONENUMBER:
+            return SearchKeys.phoneKey((PhoneNumber) entry);
+        case POSTALADDRESS:
+            return SearchKeys.postalAddressKey((PostalAddress) entry);
+        case EMAILID:
+            return SearchKeys.emailKey((EmailAddress) entry);
+        case NOTE:
+            return SearchKeys.fold((String) entry);
+        default:
+            throw new IllegalArgumentException("No index for " + type);
+        }
+    }
+
     /**
      * Returns a summary of the address book.
      */
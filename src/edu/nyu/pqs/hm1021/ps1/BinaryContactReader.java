@@ -0,0 +1,163 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/*
+ * This is a helper class which reads the contacts of an address book file in
+ * binary format, one block at a time, decompressing the blocks of a
+ * compressed file one by one. See BinaryFormat for the layout of the file.
+ * This is not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class BinaryContactReader extends ContactReader {
+
+    private DataInputStream in;
+    private CRC32 crc;
+    private BlockCodec codec;
+    private long remainingContacts;
+
+    private byte[] block = new byte[0];
+    private byte[] compressed = new byte[0];
+    private int blockLength;
+    private int position;
+    private int remainingInBlock;
+
+    protected BinaryContactReader(InputStream in) throws IOException {
+        this(in, new Interner());
+    }
+
+    /*
+     * Reads a file whose contacts share their fields with few distinct values
+     * with the other contacts read through the interner.
+     */
+    protected BinaryContactReader(InputStream in, Interner interner)
+            throws IOException {
+        super(interner);
+        this.in = new DataInputStream(in);
+        try {
+            byte[] magic = new byte[BinaryFormat.MAGIC.length];
+            this.in.readFully(magic);
+            int version = this.in.readInt();
+            int flags = this.in.readInt();
+            codec = BinaryFormat.codec(version, flags);
+            if ((flags & BinaryFormat.FLAG_CHECKSUMS) != 0)
+                crc = new CRC32();
+            remainingContacts = this.in.readLong();
+        } catch (EOFException e) {
+            throw new IOException("Truncated address book header", e);
+        }
+    }
+
+    /*
+     * Reads the given number of contacts from blocks which are not preceded
+     * by the header of the file, as they are in a range of blocks read by
+     * ParallelLoader, sharing the fields with few distinct values through the
+     * interner.
+     */
+    protected BinaryContactReader(InputStream blocks, boolean checksums,
+            BlockCodec codec, long contacts, Interner interner) {
+        super(interner);
+        this.in = new DataInputStream(blocks);
+        this.crc = checksums ? new CRC32() : null;
+        this.codec = codec;
+        this.remainingContacts = contacts;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return remainingContacts > 0;
+    }
+
+    @Override
+    public ContactEntry next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        try {
+            if (remainingInBlock == 0)
+                readBlock();
+            String[] fields = new String[ConversionHelper.FIELD_COUNT];
+            for (int i = 0; i < ConversionHelper.FIELD_COUNT; i++) {
+                fields[i] = readField();
+            }
+            remainingInBlock--;
+            remainingContacts--;
+            return ConversionHelper.buildContact(fields, interner);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readBlock() throws IOException {
+        try {
+            remainingInBlock = in.readInt();
+            int length = in.readInt();
+            blockLength = (codec != null) ? in.readInt() : length;
+            if (remainingInBlock <= 0 || !isValidLength(length)
+                    || !isValidLength(blockLength))
+                throw new IOException("Corrupt address book block header");
+            int checksum = (crc != null) ? in.readInt() : 0;
+            if (block.length < blockLength)
+                block = new byte[blockLength];
+            byte[] payload = block;
+            if (codec != null) {
+                if (compressed.length < length)
+                    compressed = new byte[length];
+                payload = compressed;
+            }
+            in.readFully(payload, 0, length);
+            position = 0;
+            if (crc != null) {
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum)
+                    throw new IOException("Address book block checksum mismatch");
+            }
+            if (codec != null)
+                codec.decompress(compressed, 0, length, block, blockLength);
+        } catch (EOFException e) {
+            throw new IOException("Truncated address book block", e);
+        }
+    }
+
+    /*
+     * Returns whether a block header may hold the length, which is checked
+     * before a buffer of that length is allocated. This is not part of the
+     * API.
+     */
+    static boolean isValidLength(int length) {
+        return length >= 0 && length <= BinaryFormat.MAX_BLOCK_LENGTH;
+    }
+
+    private String readField() throws IOException {
+        int length = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (position >= blockLength || shift > 28)
+                throw new IOException("Corrupt address book block");
+            b = block[position++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if (length < 0 || length > blockLength - position)
+            throw new IOException("Corrupt address book block");
+        String field = new String(block, position, length,
+                StandardCharsets.UTF_8);
+        position += length;
+        return field;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,275 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/*
+ * This is a helper class which writes the contacts in the binary file format
+ * and holds the constants shared with BinaryContactReader. This is not part of
+ * the API.
+ *
+ * The file starts with a header: the magic bytes, the version, the flags and
+ * the number of contacts. The contacts follow in blocks. A block is the number
+ * of contacts in it, the length of its payload in bytes, the CRC-32 of the
+ * payload if the checksum flag is set, and the payload itself. The payload
+ * holds the 12 fields of every contact, in the order of the text format, each
+ * as a variable-length byte count followed by the UTF-8 bytes of the field.
+ * Unlike the text format, a field may contain any character. IndexedFormat
+ * encodes contacts the same way.
+ *
+ * A file whose blocks are compressed has version COMPRESSED_VERSION, and the
+ * id of its BlockCodec in the second byte of the flags. Every block then also
+ * holds the length of its payload once decompressed, after the length of the
+ * compressed payload, and the CRC-32 covers the compressed payload. Blocks
+ * are compressed independently, so that any block can be decompressed
+ * without the ones before it. Files without compression keep version 1, so
+ * that they can still be read by earlier versions.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class BinaryFormat {
+
+    /*
+     * The leading NUL byte cannot start an address book in text format.
+     */
+    protected static final byte[] MAGIC = { 0, 'A', 'B', 'K' };
+
+    protected static final int VERSION = 1;
+
+    protected static final int COMPRESSED_VERSION = 2;
+
+    protected static final int FLAG_CHECKSUMS = 1;
+
+    private static final int CODEC_SHIFT = 8;
+    private static final int MIN_CUSTOM_CODEC_ID = 16;
+    private static final int MAX_CODEC_ID = 255;
+
+    /*
+     * A block is written as soon as its payload reaches this size.
+     */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /*
+     * The largest payload of a block, compressed or not. Only a block holding
+     * a contact of about this size could exceed it, and such a contact is
+     * rejected when it is written. Readers take larger lengths in a block
+     * header as a sign of corruption, before allocating anything for them.
+     */
+    protected static final int MAX_BLOCK_LENGTH = 1 << 26;
+
+    /*
+     * The codecs files can be read with, by id.
+     */
+    private static final Map<Integer, BlockCodec> CODECS =
+            new ConcurrentHashMap<Integer, BlockCodec>();
+
+    static {
+        CODECS.put(BlockCodec.DEFLATE.getId(), BlockCodec.DEFLATE);
+        CODECS.put(BlockCodec.GZIP.getId(), BlockCodec.GZIP);
+    }
+
+    private BinaryFormat() {
+    }
+
+    /*
+     * Registers a codec as described in BlockCodec.register().
+     */
+    protected static void register(BlockCodec codec) {
+        if (codec == null)
+            throw new IllegalArgumentException("Codec must not be null");
+        int id = codec.getId();
+        if (id < MIN_CUSTOM_CODEC_ID || id > MAX_CODEC_ID)
+            throw new IllegalArgumentException("Codec id must be between "
+                    + MIN_CUSTOM_CODEC_ID + " and " + MAX_CODEC_ID);
+        BlockCodec registered = CODECS.putIfAbsent(id, codec);
+        if (registered != null && registered != codec)
+            throw new IllegalArgumentException("Another codec is registered "
+                    + "with id " + id);
+    }
+
+    /*
+     * Returns the codec the blocks of a file with the given version and flags
+     * are compressed with, or null if they are not compressed.
+     */
+    protected static BlockCodec codec(int version, int flags)
+            throws IOException {
+        if (version == VERSION)
+            return null;
+        if (version != COMPRESSED_VERSION)
+            throw new IOException("Unsupported address book version "
+                    + version);
+        int id = (flags >>> CODEC_SHIFT) & MAX_CODEC_ID;
+        BlockCodec codec = CODECS.get(id);
+        if (codec == null)
+            throw new IOException("No codec registered with id " + id);
+        return codec;
+    }
+
+    /*
+     * Writes the contacts, compressing their blocks with the codec unless it
+     * is null.
+     */
+    protected static void write(OutputStream stream,
+            Collection<ContactEntry> contacts, boolean checksums,
+            BlockCodec codec) throws IOException {
+        int flags = checksums ? FLAG_CHECKSUMS : 0;
+        if (codec != null)
+            flags |= codec.getId() << CODEC_SHIFT;
+        DataOutputStream out = new DataOutputStream(stream);
+        out.write(MAGIC);
+        out.writeInt((codec == null) ? VERSION : COMPRESSED_VERSION);
+        out.writeInt(flags);
+        out.writeLong(contacts.size());
+
+        Block block = new Block();
+        CRC32 crc = checksums ? new CRC32() : null;
+        int contactsInBlock = 0;
+        for (ContactEntry contact : contacts) {
+            writeContact(block, contact);
+            contactsInBlock++;
+            if (block.size() >= BLOCK_SIZE) {
+                writeBlock(out, block, contactsInBlock, crc, codec);
+                contactsInBlock = 0;
+            }
+        }
+        if (contactsInBlock > 0)
+            writeBlock(out, block, contactsInBlock, crc, codec);
+        out.flush();
+    }
+
+    private static void writeBlock(DataOutputStream out, Block block,
+            int contactsInBlock, CRC32 crc, BlockCodec codec)
+            throws IOException {
+        byte[] payload = block.bytes();
+        int length = block.size();
+        if (codec != null) {
+            payload = codec.compress(block.bytes(), 0, block.size());
+            length = payload.length;
+        }
+        if (block.size() > MAX_BLOCK_LENGTH || length > MAX_BLOCK_LENGTH)
+            throw new IOException("Contact too large for the binary format");
+        out.writeInt(contactsInBlock);
+        out.writeInt(length);
+        if (codec != null)
+            out.writeInt(block.size());
+        if (crc != null) {
+            crc.reset();
+            crc.update(payload, 0, length);
+            out.writeInt((int) crc.getValue());
+        }
+        out.write(payload, 0, length);
+        block.reset();
+    }
+
+    /*
+     * Writes the fields in the same order as
+     * ConversionHelper.appendContact().
+     */
+    protected static void writeContact(ByteArrayOutputStream block,
+            ContactEntry contact) {
+        ContactName name = contact.getName();
+        PostalAddress address = contact.getPostalAddress();
+        writeField(block, name.getFirstName());
+        writeField(block, name.getLastName());
+        writeField(block, name.getMiddleName());
+        writeField(block, contact.getPhoneNumber().getPhoneNum());
+        writeField(block, address.getApt());
+        writeField(block, address.getStreet());
+        writeField(block, address.getCity());
+        writeField(block, address.getState());
+        writeField(block, address.getZip());
+        writeField(block, address.getCountry());
+        writeField(block, contact.getEmailId().getEmailId());
+        writeField(block, contact.getNote());
+    }
+
+    /*
+     * Decodes the contact written by writeContact() to the given bytes, which
+     * must hold that contact only.
+     */
+    protected static ContactEntry readContact(byte[] bytes, int offset,
+            int length) throws IOException {
+        String[] fields = new String[ConversionHelper.FIELD_COUNT];
+        int position = offset;
+        int end = offset + length;
+        for (int i = 0; i < fields.length; i++) {
+            int fieldLength = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (position >= end || shift > 28)
+                    throw new IOException("Corrupt contact record");
+                b = bytes[position++];
+                fieldLength |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (fieldLength < 0 || fieldLength > end - position)
+                throw new IOException("Corrupt contact record");
+            fields[i] = new String(bytes, position, fieldLength,
+                    StandardCharsets.UTF_8);
+            position += fieldLength;
+        }
+        if (position != end)
+            throw new IOException("Corrupt contact record");
+        return ConversionHelper.buildContact(fields, null);
+    }
+
+    /*
+     * Writes the field as its length followed by its UTF-8 bytes. ASCII
+     * fields, the common case, are copied without encoding them first. A null
+     * field is written as an empty one.
+     */
+    private static void writeField(ByteArrayOutputStream block, String field) {
+        if (field == null)
+            field = "";
+        int length = field.length();
+        int i = 0;
+        while (i < length && field.charAt(i) < 0x80)
+            i++;
+        if (i == length) {
+            writeLength(block, length);
+            for (i = 0; i < length; i++) {
+                block.write(field.charAt(i));
+            }
+        } else {
+            byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+            writeLength(block, bytes.length);
+            block.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /*
+     * Writes a non-negative length 7 bits at a time, least significant bits
+     * first, with the high bit set on all but the last byte.
+     */
+    private static void writeLength(ByteArrayOutputStream block, int length) {
+        while ((length & ~0x7F) != 0) {
+            block.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        block.write(length);
+    }
+
+    /*
+     * A reusable buffer for the payload of a block, which gives access to its
+     * bytes without copying them.
+     */
+    private static class Block extends ByteArrayOutputStream {
+
+        private Block() {
+            super(BLOCK_SIZE + 1024);
+        }
+
+        private byte[] bytes() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/*
+ * This is a helper class which keeps the distinct keys of a name index in a
+ * BK-tree, so that the address book can find the keys within a given
+ * Levenshtein distance of a misspelled name without comparing it to every
+ * key. The children of a node are stored by their distance to it. As the
+ * distance is a metric, a key within k of the query can only be below a child
+ * whose distance to its parent is within k of the distance between the parent
+ * and the query, so a search only descends into those children. This is not
+ * part of the API.
+ *
+ * A BK-tree cannot remove a node without rebuilding the subtree below it, so
+ * a removed key is only marked as such, and revived if it is added again.
+ * The tree is rebuilt from its live keys once they are outnumbered by the
+ * removed ones.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class BkTree {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final Comparator<Match> BY_DISTANCE =
+            new Comparator<Match>() {
+                @Override
+                public int compare(Match m1, Match m2) {
+                    if (m1.distance != m2.distance)
+                        return (m1.distance < m2.distance) ? -1 : 1;
+                    return m1.key.compareTo(m2.key);
+                }
+            };
+
+    private Node root;
+    private int live;
+    private int removed;
+
+    protected BkTree() {
+    }
+
+    /*
+     * Creates a copy of the other tree which can be changed independently of
+     * it. The nodes are copied as they are, without computing any distance.
+     */
+    protected BkTree(BkTree other) {
+        live = other.live;
+        removed = other.removed;
+        if (other.root == null)
+            return;
+        root = new Node(other.root);
+        Deque<Node> pending = new ArrayDeque<Node>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            for (int d = 0; d < node.children.length; d++) {
+                if (node.children[d] != null) {
+                    node.children[d] = new Node(node.children[d]);
+                    pending.push(node.children[d]);
+                }
+            }
+        }
+    }
+
+    /*
+     * Adds the key to the tree, or revives it if it was removed. Adding a key
+     * which is already in the tree does nothing.
+     */
+    protected void add(String key) {
+        if (root == null) {
+            root = new Node(key);
+            live++;
+            return;
+        }
+        int[] previous = new int[key.length() + 1];
+        int[] current = new int[key.length() + 1];
+        Node node = root;
+        while (true) {
+            int distance = distance(key, node.key, previous, current,
+                    Integer.MAX_VALUE);
+            if (distance == 0) {
+                if (node.removed) {
+                    node.removed = false;
+                    removed--;
+                    live++;
+                }
+                return;
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                node.setChild(distance, new Node(key));
+                live++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /*
+     * Marks the key as removed, and rebuilds the tree if most of its keys are
+     * removed ones.
+     */
+    protected void remove(String key) {
+        int[] previous = new int[key.length() + 1];
+        int[] current = new int[key.length() + 1];
+        Node node = root;
+        while (node != null) {
+            int distance = distance(key, node.key, previous, current,
+                    Integer.MAX_VALUE);
+            if (distance == 0) {
+                if (!node.removed) {
+                    node.removed = true;
+                    live--;
+                    removed++;
+                }
+                break;
+            }
+            node = node.child(distance);
+        }
+        if (removed > live) {
+            List<String> keys = keys();
+            root = null;
+            live = 0;
+            removed = 0;
+            for (String k : keys) {
+                add(k);
+            }
+        }
+    }
+
+    /*
+     * Returns the live keys within maxDistance of the query, sorted by their
+     * distance to it and then by key.
+     */
+    protected List<Match> search(String query, int maxDistance) {
+        List<Match> matches = new ArrayList<Match>();
+        if (root == null)
+            return matches;
+        int[] previous = new int[query.length() + 1];
+        int[] current = new int[query.length() + 1];
+        Deque<Node> pending = new ArrayDeque<Node>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            // beyond this distance neither the node nor its children match
+            int bound = Math.max(0, node.children.length - 1) + maxDistance;
+            int distance = distance(query, node.key, previous, current, bound);
+            if (distance <= maxDistance && !node.removed)
+                matches.add(new Match(node.key, distance));
+            int from = Math.max(1, distance - maxDistance);
+            int to = Math.min(node.children.length - 1, distance
+                    + maxDistance);
+            for (int d = from; d <= to; d++) {
+                if (node.children[d] != null)
+                    pending.push(node.children[d]);
+            }
+        }
+        Collections.sort(matches, BY_DISTANCE);
+        return matches;
+    }
+
+    /*
+     * Returns the live keys of the tree.
+     */
+    private List<String> keys() {
+        List<String> keys = new ArrayList<String>(live);
+        if (root == null)
+            return keys;
+        Deque<Node> pending = new ArrayDeque<Node>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            if (!node.removed)
+                keys.add(node.key);
+            for (Node child : node.children) {
+                if (child != null)
+                    pending.push(child);
+            }
+        }
+        return keys;
+    }
+
+    /*
+     * Sorts matches found without the tree in the same order as search().
+     */
+    protected static void sort(List<Match> matches) {
+        Collections.sort(matches, BY_DISTANCE);
+    }
+
+    /*
+     * Returns the Levenshtein distance between the strings, or bound + 1 if
+     * it is above bound, for searches without a tree.
+     */
+    protected static int distance(String s1, String s2, int bound) {
+        return distance(s1, s2, new int[s1.length() + 1],
+                new int[s1.length() + 1], bound);
+    }
+
+    /*
+     * Returns the Levenshtein distance between the strings, the least number
+     * of characters to insert, delete or replace to turn one into the other.
+     * The two rows of the dynamic programming table are given by the caller,
+     * so that they are allocated once per search, with one more element than
+     * the length of s1. Once the distance is known to be above bound, bound +
+     * 1 is returned without computing the rest of the table.
+     */
+    private static int distance(String s1, String s2, int[] previous,
+            int[] current, int bound) {
+        int length1 = s1.length();
+        if (Math.abs(length1 - s2.length()) > bound)
+            return bound + 1;
+        for (int i = 0; i <= length1; i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= s2.length(); j++) {
+            char c = s2.charAt(j - 1);
+            current[0] = j;
+            int rowMinimum = j;
+            for (int i = 1; i <= length1; i++) {
+                int cost = (s1.charAt(i - 1) == c) ? 0 : 1;
+                current[i] = Math.min(Math.min(current[i - 1], previous[i]) + 1,
+                        previous[i - 1] + cost);
+                rowMinimum = Math.min(rowMinimum, current[i]);
+            }
+            // the distance is at least the minimum of any row
+            if (rowMinimum > bound)
+                return bound + 1;
+            int[] row = previous;
+            previous = current;
+            current = row;
+        }
+        return previous[length1];
+    }
+
+    /*
+     * A key found by a search, and its distance to the query.
+     */
+    static class Match {
+
+        protected final String key;
+        protected final int distance;
+
+        protected Match(String key, int distance) {
+            this.key = key;
+            this.distance = distance;
+        }
+    }
+
+    private static class Node {
+
+        private final String key;
+        private boolean removed;
+        // the child at index d is at distance d from this node
+        private Node[] children = NO_CHILDREN;
+
+        private Node(String key) {
+            this.key = key;
+        }
+
+        /*
+         * Copies the node, with the same children as the other one.
+         */
+        private Node(Node other) {
+            this.key = other.key;
+            this.removed = other.removed;
+            this.children = (other.children.length == 0) ? NO_CHILDREN
+                    : other.children.clone();
+        }
+
+        private Node child(int distance) {
+            return (distance < children.length) ? children[distance] : null;
+        }
+
+        private void setChild(int distance, Node child) {
+            if (distance >= children.length)
+                children = Arrays.copyOf(children, distance + 1);
+            children[distance] = child;
+        }
+    }
+}
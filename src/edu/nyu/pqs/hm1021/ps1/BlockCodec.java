@@ -0,0 +1,123 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.IOException;
+
+/**
+ * BlockCodec compresses the blocks of contacts of an address book saved in a
+ * binary format by AddressBook.save(File, FileFormat, BlockCodec). Every
+ * block is compressed on its own, so that a compressed file can still be read
+ * one block at a time by AddressBook.readStream(), or one range of blocks per
+ * thread by AddressBook.readParallel(). <br>
+ * The id of the codec is stored in the file, and the file is decompressed by
+ * the codec registered with that id when it is read. DEFLATE and GZIP, which
+ * use java.util.zip, are always registered. Other codecs have to be
+ * registered with register() before a file they compressed can be read. <br>
+ * Codecs may be used by several threads at once, so they have to be
+ * thread-safe.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public interface BlockCodec {
+
+    /**
+     * Compresses blocks into raw DEFLATE streams with the default compression
+     * level.
+     */
+    public static final BlockCodec DEFLATE = new DeflateCodec(1, false,
+            java.util.zip.Deflater.DEFAULT_COMPRESSION);
+
+    /**
+     * Compresses every block into a GZIP member with the default compression
+     * level, which any GZIP decoder can decompress once extracted from the
+     * file.
+     */
+    public static final BlockCodec GZIP = new DeflateCodec(2, true,
+            java.util.zip.Deflater.DEFAULT_COMPRESSION);
+
+    /**
+     * Returns the id stored in the files compressed by this codec. Ids from 1
+     * to 15 are reserved for the codecs of this package, other codecs use ids
+     * from 16 to 255.
+     *
+     * @return Id of the codec
+     */
+    int getId();
+
+    /**
+     * Compresses a block.
+     *
+     * @param bytes
+     *            Array holding the block
+     * @param offset
+     *            Offset of the block in bytes
+     * @param length
+     *            Length of the block
+     * @return The compressed block
+     * @throws IOException
+     *             If the block could not be compressed
+     */
+    byte[] compress(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Decompresses a block compressed by compress().
+     *
+     * @param bytes
+     *            Array holding the compressed block
+     * @param offset
+     *            Offset of the compressed block in bytes
+     * @param length
+     *            Length of the compressed block
+     * @param block
+     *            Array to decompress the block to, from index 0
+     * @param blockLength
+     *            Length of the block once decompressed
+     * @throws IOException
+     *             If the compressed block is corrupt, or does not decompress
+     *             to exactly blockLength bytes
+     */
+    void decompress(byte[] bytes, int offset, int length, byte[] block,
+            int blockLength) throws IOException;
+
+    /**
+     * Returns a codec like DEFLATE which compresses with the given level.
+     * Files it compresses are read with DEFLATE, whatever the level.
+     *
+     * @param level
+     *            Compression level, from 0 to 9, or -1 for the default
+     * @return A DEFLATE codec with the given level
+     * @throws IllegalArgumentException
+     *             If the level is neither -1 nor between 0 and 9
+     */
+    public static BlockCodec deflate(int level) {
+        return new DeflateCodec(DEFLATE.getId(), false, level);
+    }
+
+    /**
+     * Returns a codec like GZIP which compresses with the given level. Files
+     * it compresses are read with GZIP, whatever the level.
+     *
+     * @param level
+     *            Compression level, from 0 to 9, or -1 for the default
+     * @return A GZIP codec with the given level
+     * @throws IllegalArgumentException
+     *             If the level is neither -1 nor between 0 and 9
+     */
+    public static BlockCodec gzip(int level) {
+        return new DeflateCodec(GZIP.getId(), true, level);
+    }
+
+    /**
+     * Registers a codec, so that the files it compressed can be read.
+     * Registering the same codec again does nothing.
+     *
+     * @param codec
+     *            Codec to register
+     * @throws IllegalArgumentException
+     *             If the codec is null, its id is not between 16 and 255, or
+     *             another codec is registered with the same id
+     */
+    public static void register(BlockCodec codec) {
+        BinaryFormat.register(codec);
+    }
+}
@@ -0,0 +1,73 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.BitSet;
+import java.util.Locale;
+
+/*
+ * This is a helper class for the columns of a ColumnarAddressBook. A column
+ * holds one field of every contact, by row number, and is searched as a whole:
+ * searches take and fill a set of row numbers, so that a search touches only
+ * the columns it compares. This is not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+abstract class Column {
+
+    /*
+     * Appends the value of the next row, which may be null.
+     */
+    protected abstract void add(String value);
+
+    /*
+     * Returns the value of the row.
+     */
+    protected abstract String get(int row);
+
+    /*
+     * Clears the rows whose value is not equal to the given one ignoring
+     * case, as String.equalsIgnoreCase() compares them.
+     */
+    protected abstract void retainIgnoreCase(String value, BitSet rows);
+
+    /*
+     * Adds the rows among candidates whose value, lower-cased, contains the
+     * already lower-cased query to matches. A null value is searched as the
+     * text "null", the way it is written to a file.
+     */
+    protected abstract void findSubstring(String query, BitSet candidates,
+            BitSet matches);
+
+    private static final String UPPER_CASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    /*
+     * Returns whether the string holds only ASCII characters, for which
+     * lower-casing is the same character by character and as a whole string,
+     * as long as asciiFolds() holds.
+     */
+    protected static boolean isAscii(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    /*
+     * Returns whether the default locale lower-cases the letters A to Z to a
+     * to z, as toLowerAscii() does. It does not in some locales, such as
+     * Turkish, where 'I' becomes the dotless i.
+     */
+    protected static boolean asciiFolds() {
+        return UPPER_CASE.toLowerCase().equals(
+                UPPER_CASE.toLowerCase(Locale.ROOT));
+    }
+
+    protected static char toLowerAscii(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    protected static boolean containsLowerCase(String value, String query) {
+        return String.valueOf(value).toLowerCase().contains(query);
+    }
+}
@@ -0,0 +1,414 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * ColumnarAddressBook is an address book which stores its contacts by field
+ * rather than by contact: every field of all the contacts is kept in a column,
+ * either back to back in one char array or, for the city, state, zip and
+ * country which repeat a few values, as codes into a dictionary of the
+ * distinct values. It holds no ContactEntry objects at all, which saves most
+ * of the memory an AddressBook spends on object headers and references, and a
+ * ContactEntry is only built for the contacts a search returns. <br>
+ * The searches have the same semantics as the ones of AddressBook. They have
+ * no index and scan the columns they compare, and only those: a search by
+ * phone number reads the phone numbers of the contacts and nothing else. <br>
+ * This class is not thread-safe.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class ColumnarAddressBook {
+
+    private static final int FIELD_COUNT = ConversionHelper.FIELD_COUNT;
+
+    // positions of the fields in a contact, as in its String representation
+    private static final int FIRSTNAME = 0;
+    private static final int LASTNAME = 1;
+    private static final int MIDDLENAME = 2;
+    private static final int PHONENUMBER = 3;
+    private static final int APT = 4;
+    private static final int STREET = 5;
+    private static final int CITY = 6;
+    private static final int STATE = 7;
+    private static final int ZIP = 8;
+    private static final int COUNTRY = 9;
+    private static final int EMAILID = 10;
+    private static final int NOTE = 11;
+
+    private Column[] columns;
+    // the rows of the columns which hold a contact, the others were removed
+    private BitSet live;
+    private int rows;
+
+    /**
+     * Creates an empty address book.
+     */
+    public ColumnarAddressBook() {
+        columns = newColumns();
+        live = new BitSet();
+    }
+
+    /**
+     * Reads an address book file, in any of the formats AddressBook saves,
+     * straight into a ColumnarAddressBook: the contacts are read one at a time
+     * and are never all held as objects. Same as AddressBook.read(), a text
+     * file is decoded with the given charset.
+     *
+     * @param file
+     *            Name of the file which contains address book in raw format
+     * @param charset
+     *            Charset a text file was written with
+     * @return An address book of the contacts in the file
+     * @throws FileNotFoundException
+     *             If the file does not exist
+     * @throws IOException
+     *             If the file could not be read
+     */
+    public static ColumnarAddressBook read(File file, Charset charset)
+            throws FileNotFoundException, IOException {
+        ColumnarAddressBook book = new ColumnarAddressBook();
+        ContactReader reader = ContactReader.open(file, charset);
+        try {
+            while (reader.hasNext()) {
+                book.addContactEntry(reader.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            reader.close();
+        }
+        return book;
+    }
+
+    /**
+     * Adds an entry to the address book. If an entry with same parameters
+     * exists, the address book will store duplicates of the same contact.
+     * Entries which lack one of the name, phone number, postal address and
+     * email address are rejected, as their fields cannot all be stored; the
+     * ContactEntry.Builder always sets the last two.
+     *
+     * @param contact
+     *            An object of ContactEntry to be added
+     * @return true if the contact gets saved successfully <br>
+     *         false if contact is null or is rejected
+     */
+    public boolean addContactEntry(ContactEntry contact) {
+        if (contact == null || contact.getName() == null
+                || contact.getPhoneNumber() == null
+                || contact.getPostalAddress() == null
+                || contact.getEmailId() == null)
+            return false;
+        ContactName name = contact.getName();
+        PostalAddress address = contact.getPostalAddress();
+        columns[FIRSTNAME].add(name.getFirstName());
+        columns[LASTNAME].add(name.getLastName());
+        columns[MIDDLENAME].add(name.getMiddleName());
+        columns[PHONENUMBER].add(contact.getPhoneNumber().getPhoneNum());
+        columns[APT].add(address.getApt());
+        columns[STREET].add(address.getStreet());
+        columns[CITY].add(address.getCity());
+        columns[STATE].add(address.getState());
+        columns[ZIP].add(address.getZip());
+        columns[COUNTRY].add(address.getCountry());
+        columns[EMAILID].add(contact.getEmailId().getEmailId());
+        columns[NOTE].add(contact.getNote());
+        live.set(rows++);
+        return true;
+    }
+
+    /**
+     * Adds all the given entries to the address book, in order, as
+     * addContactEntry() would one by one.
+     *
+     * @param contacts
+     *            The ContactEntry objects to be added
+     * @return the number of entries rejected
+     */
+    public int addAll(Collection<ContactEntry> contacts) {
+        int rejected = 0;
+        for (ContactEntry contact : contacts) {
+            if (!addContactEntry(contact))
+                rejected++;
+        }
+        return rejected;
+    }
+
+    /**
+     * Removes a contact entry from the address book. If two copies of the same
+     * contact exist, removeContactEntry() will remove the first occurrence
+     * only. The columns are compacted once half of their rows are removed
+     * contacts.
+     *
+     * @param contact
+     *            An object of ContactEntry to be removed
+     * @return true if the contact is removed successfully <br>
+     *         false if contact is null or not in the address book
+     */
+    public boolean removeContactEntry(ContactEntry contact) {
+        if (contact == null || contact.getName() == null)
+            return false;
+        ContactName name = contact.getName();
+        BitSet candidates = select(new int[] { FIRSTNAME, LASTNAME },
+                new String[] { name.getFirstName(), name.getLastName() });
+        for (int row = candidates.nextSetBit(0); row >= 0; row = candidates
+                .nextSetBit(row + 1)) {
+            if (contact.equals(toContact(row))) {
+                live.clear(row);
+                if (live.cardinality() * 2 < rows)
+                    compact();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of contacts in the address book
+     *
+     * @return number of contacts
+     */
+    public int size() {
+        return live.cardinality();
+    }
+
+    /**
+     * Searches through out the address book for the substring passed by the
+     * user. Same as AddressBook.searchBySubString(). Each column is scanned in
+     * turn for the contacts not matched yet, unless the substring could span
+     * several fields of the String representation of a contact, in which case
+     * that representation is built for every contact.
+     *
+     * @param searchString
+     *            Substring to be searched
+     * @return A list of contacts whose parameters contains the input substring
+     */
+    public List<ContactEntry> searchBySubString(String searchString) {
+        String query = searchString.toLowerCase();
+        BitSet matches = new BitSet(rows);
+        if (query.indexOf(';') >= 0 || query.indexOf('\n') >= 0
+                || query.endsWith(" ")) {
+            // fields are followed by " ;;" and contacts by a newline
+            for (int row = live.nextSetBit(0); row >= 0; row = live
+                    .nextSetBit(row + 1)) {
+                if (searchableText(row).contains(query))
+                    matches.set(row);
+            }
+        } else {
+            BitSet candidates = (BitSet) live.clone();
+            for (Column column : columns) {
+                column.findSubstring(query, candidates, matches);
+                candidates.andNot(matches);
+            }
+        }
+        return toContacts(matches);
+    }
+
+    /**
+     * Searches throughout the address book for the contact whose full name
+     * matches the full name given as input. Same as
+     * AddressBook.searchContactByFullName().
+     *
+     * @param name
+     *            Full name of the person to be searched
+     * @return A list of contacts whose full name matched the given input name.
+     */
+    public List<ContactEntry> searchContactByFullName(ContactName name) {
+        if (name == null)
+            return new ArrayList<ContactEntry>();
+        return toContacts(select(new int[] { FIRSTNAME, LASTNAME, MIDDLENAME },
+                new String[] { name.getFirstName(), name.getLastName(),
+                        name.getMiddleName() }));
+    }
+
+    /**
+     * Searches through out the address book for the contact whose first name
+     * matches the first name given as input. Same as
+     * AddressBook.searchContactByFirstName().
+     *
+     * @param name
+     *            First name of the person to be searched
+     * @return A list of contacts whose first name matched the given input name.
+     */
+    public List<ContactEntry> searchContactByFirstName(ContactName name) {
+        if (name == null)
+            return new ArrayList<ContactEntry>();
+        return toContacts(select(new int[] { FIRSTNAME },
+                new String[] { name.getFirstName() }));
+    }
+
+    /**
+     * Searches through out the address book for the contact whose last name
+     * matches the last name given as input. Same as
+     * AddressBook.searchContactByLastName().
+     *
+     * @param name
+     *            Last name of the person to be searched
+     * @return A list of contacts whose last name matched the given input name
+     */
+    public List<ContactEntry> searchContactByLastName(ContactName name) {
+        if (name == null)
+            return new ArrayList<ContactEntry>();
+        return toContacts(select(new int[] { LASTNAME },
+                new String[] { name.getLastName() }));
+    }
+
+    /**
+     * Searches through out the address book for the contact whose phone number
+     * matches the phone number provided as input. Same as
+     * AddressBook.searchContactByPhoneNumber().
+     *
+     * @param number
+     *            Phone number to be searched
+     * @return A list of contacts whose phone number matched the given number
+     */
+    public List<ContactEntry> searchContactByPhoneNumber(PhoneNumber number) {
+        if (number == null)
+            return new ArrayList<ContactEntry>();
+        BitSet matches = (BitSet) live.clone();
+        ((StringColumn) columns[PHONENUMBER]).retainExactly(
+                number.getPhoneNum(), matches);
+        return toContacts(matches);
+    }
+
+    /**
+     * Searches through out the address book for the contact whose Postal
+     * Address matches the address given as input. Same as
+     * AddressBook.searchContactByPostalAddress().
+     *
+     * @param address
+     *            Complete postal address of the person to be searched
+     * @return A list of contacts whose postal address matched the given input.
+     */
+    public List<ContactEntry> searchContactByPostalAddress(PostalAddress address) {
+        if (address == null)
+            return new ArrayList<ContactEntry>();
+        // the dictionary columns go first, they are the cheapest to compare
+        return toContacts(select(new int[] { COUNTRY, STATE, CITY, STREET, APT },
+                new String[] { address.getCountry(), address.getState(),
+                        address.getCity(), address.getStreet(),
+                        address.getApt() }));
+    }
+
+    /**
+     * Searches through out the address book for the contact whose email address
+     * matches the email address given as input. Same as
+     * AddressBook.searchContactByEmailAddress().
+     *
+     * @param emailId
+     *            Complete email address of the person to be searched
+     * @return A list of contacts whose email address matched the given input
+     */
+    public List<ContactEntry> searchContactByEmailAddress(EmailAddress emailId) {
+        if (emailId == null)
+            return new ArrayList<ContactEntry>();
+        return toContacts(select(new int[] { EMAILID },
+                new String[] { emailId.getEmailId() }));
+    }
+
+    /**
+     * Searches through out the address book for the contact whose saved note
+     * matches the note given as input. Same as
+     * AddressBook.searchContactByNote().
+     *
+     * @param note
+     *            Note of the person to be searched
+     * @return A list of contacts whose note matched the given input
+     */
+    public List<ContactEntry> searchContactByNote(String note) {
+        if (note == null)
+            return new ArrayList<ContactEntry>();
+        return toContacts(select(new int[] { NOTE }, new String[] { note }));
+    }
+
+    /**
+     * Returns a summary of the address book.
+     */
+    @Override
+    public String toString() {
+        return "ColumnarAddressBook [addressBook=" + size() + " contacts]";
+    }
+
+    private static Column[] newColumns() {
+        Column[] columns = new Column[FIELD_COUNT];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            // notes are mostly free text, a dictionary would hold a String
+            // and a map entry for most of them
+            if (field == CITY || field == STATE || field == ZIP
+                    || field == COUNTRY)
+                columns[field] = new DictionaryColumn();
+            else
+                columns[field] = new StringColumn();
+        }
+        return columns;
+    }
+
+    /*
+     * Returns the rows of the contacts whose given fields all equal the given
+     * values ignoring case. Each column narrows down the rows left by the
+     * previous ones.
+     */
+    private BitSet select(int[] fields, String[] values) {
+        BitSet matches = (BitSet) live.clone();
+        for (int i = 0; i < fields.length && !matches.isEmpty(); i++) {
+            columns[fields[i]].retainIgnoreCase(values[i], matches);
+        }
+        return matches;
+    }
+
+    private List<ContactEntry> toContacts(BitSet matches) {
+        List<ContactEntry> output = new ArrayList<ContactEntry>(
+                matches.cardinality());
+        for (int row = matches.nextSetBit(0); row >= 0; row = matches
+                .nextSetBit(row + 1)) {
+            output.add(toContact(row));
+        }
+        return output;
+    }
+
+    private ContactEntry toContact(int row) {
+        String[] fields = new String[FIELD_COUNT];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            fields[field] = columns[field].get(row);
+        }
+        return ConversionHelper.buildContact(fields, null);
+    }
+
+    /*
+     * Returns the lower-cased String representation of the contact, the text
+     * AddressBook.searchBySubString() searches.
+     */
+    private String searchableText(int row) {
+        StringBuilder text = new StringBuilder(128);
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            text.append(columns[field].get(row)).append(" ;;");
+        }
+        text.append('\n');
+        return text.toString().toLowerCase();
+    }
+
+    /*
+     * Copies the rows of the contacts left into new columns.
+     */
+    private void compact() {
+        Column[] compacted = newColumns();
+        for (int row = live.nextSetBit(0); row >= 0; row = live
+                .nextSetBit(row + 1)) {
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                compacted[field].add(columns[field].get(row));
+            }
+        }
+        columns = compacted;
+        rows = live.cardinality();
+        live = new BitSet(rows);
+        live.set(0, rows);
+    }
+}
@@ -0,0 +1,395 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * ConcurrentAddressBook is a thread-safe address book for many concurrent
+ * readers and occasional writers. It always holds an immutable snapshot of the
+ * address book: searches and saves to a file run on the current snapshot
+ * without taking any lock, so a writer never blocks them. A write copies the
+ * current snapshot, applies the change to the copy and publishes it as the
+ * new snapshot. Writes are therefore serialized and cost time proportional to the
+ * size of the address book, which suits books that are searched much more often
+ * than they are changed. <br>
+ * Searches not offered here can be run on snapshot(), which also gives a
+ * consistent view across several searches.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class ConcurrentAddressBook {
+
+    private volatile AddressBook snapshot;
+
+    private final Object writeLock = new Object();
+
+    /**
+     * Constructs a new, empty concurrent address book
+     */
+    public ConcurrentAddressBook() {
+        this(new AddressBook.Builder());
+    }
+
+    /**
+     * Constructs a new, empty concurrent address book whose snapshots have the
+     * optional features of the given Builder enabled.
+     *
+     * @param builder
+     *            Builder of the snapshots
+     */
+    public ConcurrentAddressBook(AddressBook.Builder builder) {
+        AddressBook empty = builder.build();
+        empty.makeReadOnly();
+        snapshot = empty;
+    }
+
+    /**
+     * Returns the current snapshot of the address book. The snapshot never
+     * changes: adding or removing a contact through it throws
+     * UnsupportedOperationException, and later writes to this
+     * ConcurrentAddressBook only affect later snapshots.
+     *
+     * @return A read-only AddressBook holding the current contacts
+     */
+    public AddressBook snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Adds an entry to the address book. Same as
+     * AddressBook.addContactEntry().
+     *
+     * @param contact
+     *            An object of ContactEntry to be added
+     * @return true if the contact gets saved successfully <br>
+     *         false if contact is null or is rejected
+     */
+    public boolean addContactEntry(ContactEntry contact) {
+        return addContactEntryWithId(contact) >= 0;
+    }
+
+    /**
+     * Adds an entry to the address book and returns its id. Same as
+     * AddressBook.addContactEntryWithId().
+     *
+     * @param contact
+     *            An object of ContactEntry to be added
+     * @return the id of the added entry, a non-negative number <br>
+     *         -1 if contact is null or is rejected
+     */
+    public long addContactEntryWithId(ContactEntry contact) {
+        if (!AddressBook.isAcceptable(contact))
+            return -1;
+        synchronized (writeLock) {
+            AddressBook next = snapshot.copy();
+            long id = next.addContactEntryWithId(contact);
+            publish(next);
+            return id;
+        }
+    }
+
+    /**
+     * Adds all the given entries to the address book. Same as
+     * AddressBook.addAll(), and publishes a single new snapshot.
+     *
+     * @param contacts
+     *            The ContactEntry objects to be added
+     * @return the number of entries rejected
+     */
+    public int addAll(Collection<ContactEntry> contacts) {
+        synchronized (writeLock) {
+            AddressBook next = snapshot.copy();
+            int rejected = next.addAll(contacts);
+            if (rejected < contacts.size())
+                publish(next);
+            return rejected;
+        }
+    }
+
+    /**
+     * Removes the first occurrence of a contact entry from the address book.
+     * Same as AddressBook.removeContactEntry().
+     *
+     * @param contact
+     *            An object of ContactEntry to be removed
+     * @return true if the contact is removed successfully <br>
+     *         false if contact is null
+     */
+    public boolean removeContactEntry(ContactEntry contact) {
+        if (contact == null)
+            return false;
+        synchronized (writeLock) {
+            long id = snapshot.getContactId(contact);
+            return id >= 0 && removeContactEntryById(id);
+        }
+    }
+
+    /**
+     * Removes the entry with the given id from the address book. Same as
+     * AddressBook.removeContactEntryById().
+     *
+     * @param id
+     *            Id of the entry
+     * @return true if the entry is removed successfully <br>
+     *         false if there is no entry with that id
+     */
+    public boolean removeContactEntryById(long id) {
+        synchronized (writeLock) {
+            // look the entry up first, so as to copy only if needed
+            if (snapshot.getContactEntryById(id) == null)
+                return false;
+            AddressBook next = snapshot.copy();
+            next.removeContactEntryById(id);
+            publish(next);
+            return true;
+        }
+    }
+
+    /**
+     * Removes the first occurrence of every given entry from the address book.
+     * Same as AddressBook.removeAll(), and publishes a single new snapshot.
+     *
+     * @param contacts
+     *            The ContactEntry objects to be removed
+     * @return the number of entries removed
+     */
+    public int removeAll(Collection<ContactEntry> contacts) {
+        synchronized (writeLock) {
+            AddressBook next = snapshot.copy();
+            int removed = next.removeAll(contacts);
+            if (removed > 0)
+                publish(next);
+            return removed;
+        }
+    }
+
+    /**
+     * Same as AddressBook.getContactEntryById(), on the current snapshot.
+     *
+     * @param id
+     *            Id of the entry
+     * @return the entry with that id <br>
+     *         null if there is no entry with that id
+     */
+    public ContactEntry getContactEntryById(long id) {
+        return snapshot.getContactEntryById(id);
+    }
+
+    /**
+     * Same as AddressBook.searchBySubString(), on the current snapshot.
+     *
+     * @param searchString
+     *            Substring to be searched
+     * @return A list of contacts whose parameters contains the input substring
+     */
+    public List<ContactEntry> searchBySubString(String searchString) {
+        return snapshot.searchBySubString(searchString);
+    }
+
+    /**
+     * Same as AddressBook.searchBySubString(String, int, int), on the current
+     * snapshot.
+     *
+     * @param searchString
+     *            Substring to be searched
+     * @param offset
+     *            Number of matching contacts to skip
+     * @param limit
+     *            Maximum number of contacts to return
+     * @return A list of at most limit contacts whose parameters contains the
+     *         input substring
+     */
+    public List<ContactEntry> searchBySubString(String searchString,
+            int offset, int limit) {
+        return snapshot.searchBySubString(searchString, offset, limit);
+    }
+
+    /**
+     * Same as AddressBook.streamBySubString(), on the current snapshot. The
+     * stream may be consumed while the address book is being changed, it only
+     * ever sees the snapshot it was created on.
+     *
+     * @param searchString
+     *            Substring to be searched
+     * @return A sequential Stream of the contacts whose parameters contains
+     *         the input substring
+     */
+    public Stream<ContactEntry> streamBySubString(String searchString) {
+        return snapshot.streamBySubString(searchString);
+    }
+
+    /**
+     * Same as AddressBook.searchContactByFullName(), on the current snapshot.
+     *
+     * @param name
+     *            Full name of the person to be searched
+     * @return A list of contacts whose full name matched the given input name.
+     */
+    public List<ContactEntry> searchContactByFullName(ContactName name) {
+        return snapshot.searchContactByFullName(name);
+    }
+
+    /**
+     * Same as AddressBook.searchContactByFirstName(), on the current snapshot.
+     *
+     * @param name
+     *            First name of the person to be searched
+     * @return A list of contacts whose first name matched the given input name.
+     */
+    public List<ContactEntry> searchContactByFirstName(ContactName name) {
+        return snapshot.searchContactByFirstName(name);
+    }
+
+    /**
+     * Same as AddressBook.searchContactByLastName(), on the current snapshot.
+     *
+     * @param name
+     *            Last name of the person to be searched
+     * @return A list of contacts whose last name matched the given input name
+     */
+    public List<ContactEntry> searchContactByLastName(ContactName name) {
+        return snapshot.searchContactByLastName(name);
+    }
+
+    /**
+     * Same as AddressBook.searchContactByPhoneNumber(), on the current
+     * snapshot.
+     *
+     * @param number
+     *            Phone number to be searched
+     * @return A list of contacts whose phone number matched the given number
+     */
+    public List<ContactEntry> searchContactByPhoneNumber(PhoneNumber number) {
+        return snapshot.searchContactByPhoneNumber(number);
+    }
+
+    /**
+     * Same as AddressBook.searchContactByPostalAddress(), on the current
+     * snapshot.
+     *
+     * @param address
+     *            Complete postal address of the person to be searched
+     * @return A list of contacts whose postal address matched the given input.
+     */
+    public List<ContactEntry> searchContactByPostalAddress(PostalAddress address) {
+        return snapshot.searchContactByPostalAddress(address);
+    }
+
+    /**
+     * Same as AddressBook.searchContactByEmailAddress(), on the current
+     * snapshot.
+     *
+     * @param emailId
+     *            Complete email address of the person to be searched
+     * @return A list of contacts whose email address matched the given input
+     */
+    public List<ContactEntry> searchContactByEmailAddress(EmailAddress emailId) {
+        return snapshot.searchContactByEmailAddress(emailId);
+    }
+
+    /**
+     * Same as AddressBook.searchContactByNote(), on the current snapshot.
+     *
+     * @param note
+     *            Note of the person to be searched
+     * @return A list of contacts whose note matched the given input
+     */
+    public List<ContactEntry> searchContactByNote(String note) {
+        return snapshot.searchContactByNote(note);
+    }
+
+    /**
+     * Same as AddressBook.search(ContactQuery), on the current snapshot.
+     *
+     * @param query
+     *            Criteria the contacts have to match
+     * @return A list of contacts matching the query
+     */
+    public List<ContactEntry> search(ContactQuery query) {
+        return snapshot.search(query);
+    }
+
+    /**
+     * Saves the current snapshot to a file. Same as AddressBook.save(File).
+     * Writers are not blocked while the file is written.
+     *
+     * @param file
+     *            File object representing file to be saved
+     * @throws IOException
+     *             If the file could not be written
+     */
+    public void save(File file) throws IOException {
+        snapshot.save(file);
+    }
+
+    /**
+     * Saves the current snapshot to a file. Same as AddressBook.save(File,
+     * Charset).
+     *
+     * @param file
+     *            File object representing file to be saved
+     * @param charset
+     *            Charset to encode the file with
+     * @throws IOException
+     *             If the file could not be written
+     */
+    public void save(File file, Charset charset) throws IOException {
+        snapshot.save(file, charset);
+    }
+
+    /**
+     * Saves the current snapshot to a file. Same as AddressBook.save(File,
+     * FileFormat).
+     *
+     * @param file
+     *            File object representing file to be saved
+     * @param format
+     *            Format of the file
+     * @throws IOException
+     *             If the file could not be written
+     */
+    public void save(File file, AddressBook.FileFormat format)
+            throws IOException {
+        snapshot.save(file, format);
+    }
+
+    /**
+     * Saves the current snapshot to a directory. Same as
+     * AddressBook.saveSegments(), which only writes the segments changed since
+     * the last save. Writers are blocked while the directory is written, as
+     * the snapshot keeps track of which segments were saved.
+     *
+     * @param directory
+     *            Directory to save the address book to, created if it does
+     *            not exist
+     * @throws IOException
+     *             If the directory could not be written
+     */
+    public void saveSegments(File directory) throws IOException {
+        synchronized (writeLock) {
+            snapshot.writeSegments(directory);
+        }
+    }
+
+    /**
+     * Returns a summary of the current snapshot.
+     */
+    @Override
+    public String toString() {
+        return "Concurrent" + snapshot;
+    }
+
+    /*
+     * Publishes the new snapshot. It is made read-only before the volatile
+     * write, so readers only ever see it complete and unchanging.
+     */
+    private void publish(AddressBook next) {
+        next.makeReadOnly();
+        snapshot = next;
+    }
+}
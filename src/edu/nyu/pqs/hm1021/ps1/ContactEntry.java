@@ -11,6 +11,11 @@ package edu.nyu.pqs.hm1021.ps1;
  */
 public class ContactEntry {
 
+    // defaults shared by all contacts, as both classes are immutable
+    private static final PostalAddress NO_POSTAL_ADDRESS =
+            new PostalAddress.Builder("").build();
+    private static final EmailAddress NO_EMAIL_ID = new EmailAddress("");
+
     private ContactName name;
     private PostalAddress postalAddress;
     private PhoneNumber phoneNumber;
@@ -32,9 +37,8 @@ public class ContactEntry {
         private PhoneNumber contactPhone;
 
         // Optional parameters
-        private PostalAddress postalAddress = new PostalAddress.Builder("")
-                .build();
-        private EmailAddress emailId = new EmailAddress("");
+        private PostalAddress postalAddress = NO_POSTAL_ADDRESS;
+        private EmailAddress emailId = NO_EMAIL_ID;
         private String note = "";
 
         /**
@@ -60,9 +64,8 @@ public class ContactEntry {
          *         optional parameter methods.
          */
         public Builder postalAddress(PostalAddress addr) {
-            postalAddress = new PostalAddress.Builder(addr.getCountry())
-                    .apt(addr.getApt()).city(addr.getCity())
-                    .street(addr.getStreet()).state(addr.getState()).build();
+            // no copy needed as PostalAddress is immutable
+            postalAddress = addr;
             return this;
         }
 
@@ -154,7 +157,10 @@ public class ContactEntry {
      * @return phone number of the contact
      */
     public PhoneNumber getPhoneNumber() {
-        return new PhoneNumber(phoneNumber.getPhoneNum());
+        // returning phoneNumber without making defensive copy
+        // because PhoneNumber class is immutable
+        // since its only field is final and set once validated.
+        return phoneNumber;
     }
 
     /**
@@ -163,7 +169,10 @@ public class ContactEntry {
      * @return email id of the contact
      */
     public EmailAddress getEmailId() {
-        return new EmailAddress(emailId.getEmailId());
+        // returning emailId without making defensive copy
+        // because EmailAddress class is immutable
+        // since its only field is final and set once validated.
+        return emailId;
     }
 
     /**
@@ -184,7 +193,8 @@ public class ContactEntry {
         int result = 1;
         result = prime * result + ((emailId == null) ? 0 : emailId.hashCode());
         result = prime * result + ((name == null) ? 0 : name.hashCode());
-        result = prime * result + ((note == null) ? 0 : note.hashCode());
+        // case-insensitive, as equals() ignores the case of the note
+        result = prime * result + SearchKeys.hashIgnoreCase(note);
         result = prime * result
                 + ((phoneNumber == null) ? 0 : phoneNumber.hashCode());
         result = prime * result
@@ -208,11 +218,11 @@ public class ContactEntry {
             return false;
         }
         ContactEntry other = (ContactEntry) obj;
-        return (name.equals(other.getName())
-                && phoneNumber.equals(other.getPhoneNumber())
-                && postalAddress.equals(other.getPostalAddress())
-                && emailId.equals(other.getEmailId()) && note
-                    .equalsIgnoreCase(other.getNote()));
+        return (name.equals(other.name)
+                && phoneNumber.equals(other.phoneNumber)
+                && postalAddress.equals(other.postalAddress)
+                && emailId.equals(other.emailId) && note
+                    .equalsIgnoreCase(other.note));
     }
 
     /**
@@ -0,0 +1,345 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/*
+ * This is a helper class which holds contacts in the order of their ids. The
+ * address book assigns increasing ids to the contacts it stores, so contacts
+ * are always appended, and the list is in address book order. It holds both
+ * the contacts of the address book and the contacts of every index key. This
+ * is not part of the API.
+ *
+ * A removed contact only leaves a hole, found by binary search on the ids, so
+ * removal takes logarithmic time. The holes are squeezed out in a single pass
+ * once they outnumber the contacts, which keeps the cost of a removal constant
+ * on average, also when many contacts are removed at once.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class ContactIdList extends AbstractCollection<ContactEntry> {
+
+    private long[] ids;
+    private ContactEntry[] entries;
+    private int end;
+    private int size;
+
+    protected ContactIdList() {
+        this(4);
+    }
+
+    protected ContactIdList(int capacity) {
+        ids = new long[Math.max(capacity, 1)];
+        entries = new ContactEntry[ids.length];
+    }
+
+    /*
+     * Creates a copy of the list which can be changed independently of it.
+     */
+    protected ContactIdList(ContactIdList other) {
+        this(other.size);
+        for (int i = 0; i < other.end; i++) {
+            if (other.entries[i] != null)
+                add(other.ids[i], other.entries[i]);
+        }
+    }
+
+    /*
+     * Appends the contact, whose id must be greater than any id in the list.
+     */
+    protected void add(long id, ContactEntry contact) {
+        if (end > 0 && id <= ids[end - 1])
+            throw new IllegalArgumentException("Ids must be increasing");
+        if (end == ids.length) {
+            if (end - size > size) {
+                compact();
+            } else {
+                int capacity = ids.length + (ids.length >> 1) + 1;
+                ids = Arrays.copyOf(ids, capacity);
+                entries = Arrays.copyOf(entries, capacity);
+            }
+        }
+        ids[end] = id;
+        entries[end] = contact;
+        end++;
+        size++;
+    }
+
+    /*
+     * Makes room for the given number of contacts to be appended without
+     * growing the arrays again.
+     */
+    protected void ensureCapacity(int additional) {
+        if (end + additional <= ids.length)
+            return;
+        compact();
+        int capacity = Math.max(end + additional, ids.length);
+        ids = Arrays.copyOf(ids, capacity);
+        entries = Arrays.copyOf(entries, capacity);
+    }
+
+    /*
+     * Returns the contact with the given id, or null if there is none.
+     */
+    protected ContactEntry get(long id) {
+        int position = Arrays.binarySearch(ids, 0, end, id);
+        return (position < 0) ? null : entries[position];
+    }
+
+    /*
+     * Removes the contact with the given id, and returns it or null if there
+     * is none.
+     */
+    protected ContactEntry remove(long id) {
+        ContactEntry removed = tombstone(id);
+        compactIfSparse();
+        return removed;
+    }
+
+    /*
+     * Removes the contacts with the given ids, which must be in increasing
+     * order, and returns how many there were. The holes are squeezed out at
+     * most once, after all the contacts are removed.
+     */
+    protected int removeAll(long[] removedIds) {
+        int removed = 0;
+        int from = 0;
+        for (long id : removedIds) {
+            int position = Arrays.binarySearch(ids, from, end, id);
+            if (position < 0) {
+                from = -position - 1;
+                continue;
+            }
+            from = position + 1;
+            if (entries[position] != null) {
+                entries[position] = null;
+                size--;
+                removed++;
+            }
+        }
+        compactIfSparse();
+        return removed;
+    }
+
+    /*
+     * Removes the contact with the given id, and returns it or null if there
+     * is none, leaving its hole until compactIfSparse() is called. Indexes
+     * removing many contacts at once use it to squeeze out the holes of every
+     * list once.
+     */
+    protected ContactEntry tombstone(long id) {
+        int position = Arrays.binarySearch(ids, 0, end, id);
+        if (position < 0 || entries[position] == null)
+            return null;
+        ContactEntry removed = entries[position];
+        entries[position] = null;
+        size--;
+        return removed;
+    }
+
+    /*
+     * Squeezes out the holes if they outnumber the contacts.
+     */
+    protected void compactIfSparse() {
+        if (end - size > size)
+            compact();
+    }
+
+    /*
+     * Returns a fresh list of the contacts whose ids are at least from and
+     * less than to, in id order.
+     */
+    protected List<ContactEntry> range(long from, long to) {
+        int position = Arrays.binarySearch(ids, 0, end, from);
+        if (position < 0)
+            position = -position - 1;
+        List<ContactEntry> output = new ArrayList<ContactEntry>();
+        for (; position < end && ids[position] < to; position++) {
+            if (entries[position] != null)
+                output.add(entries[position]);
+        }
+        return output;
+    }
+
+    /*
+     * Returns the id of the first contact equal to the given one whose id is
+     * at least from, or -1 if there is none.
+     */
+    protected long idOf(ContactEntry contact, long from) {
+        int position = Arrays.binarySearch(ids, 0, end, from);
+        if (position < 0)
+            position = -position - 1;
+        for (int i = position; i < end; i++) {
+            if (entries[i] != null && contact.equals(entries[i]))
+                return ids[i];
+        }
+        return -1;
+    }
+
+    /*
+     * Returns a fresh list of the contacts of all the given lists in id order,
+     * merging the lists through a heap of their heads.
+     */
+    protected static List<ContactEntry> merge(List<ContactIdList> lists) {
+        int total = 0;
+        PriorityQueue<Head> heads = new PriorityQueue<Head>(Math.max(
+                lists.size(), 1));
+        for (ContactIdList list : lists) {
+            total += list.size;
+            Head head = new Head(list);
+            if (head.advance())
+                heads.add(head);
+        }
+        List<ContactEntry> output = new ArrayList<ContactEntry>(total);
+        while (!heads.isEmpty()) {
+            Head head = heads.poll();
+            output.add(head.list.entries[head.position]);
+            if (head.advance())
+                heads.add(head);
+        }
+        return output;
+    }
+
+    /*
+     * The next contact of a list being merged.
+     */
+    private static class Head implements Comparable<Head> {
+
+        private final ContactIdList list;
+        private int position = -1;
+
+        private Head(ContactIdList list) {
+            this.list = list;
+        }
+
+        /*
+         * Moves to the next contact, and returns false if there is none.
+         */
+        private boolean advance() {
+            position = list.skipHoles(position + 1);
+            return position < list.end;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            return Long.compare(list.ids[position],
+                    other.list.ids[other.position]);
+        }
+    }
+
+    /*
+     * Returns the contacts of this list whose ids are also in every one of the
+     * other lists, lazily and in id order. Each contact of this list costs a
+     * binary search per other list, so this list should be the shortest.
+     */
+    protected Intersection intersection(ContactIdList[] others) {
+        return new Intersection(others);
+    }
+
+    /*
+     * Iterator over an intersection, which counts the contacts of this list
+     * it looked at.
+     */
+    protected class Intersection implements Iterator<ContactEntry> {
+
+        private final ContactIdList[] others;
+        private int position;
+        private ContactEntry next;
+        private int scanned;
+
+        private Intersection(ContactIdList[] others) {
+            this.others = others;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && position < end) {
+                ContactEntry candidate = entries[position];
+                long id = ids[position];
+                position++;
+                if (candidate == null)
+                    continue;
+                scanned++;
+                if (inAll(id))
+                    next = candidate;
+            }
+            return next != null;
+        }
+
+        @Override
+        public ContactEntry next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ContactEntry match = next;
+            next = null;
+            return match;
+        }
+
+        protected int scanned() {
+            return scanned;
+        }
+
+        private boolean inAll(long id) {
+            for (ContactIdList other : others) {
+                if (other.get(id) == null)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /*
+     * Squeezes out the holes left by removed contacts.
+     */
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < end; i++) {
+            if (entries[i] != null) {
+                ids[live] = ids[i];
+                entries[live] = entries[i];
+                live++;
+            }
+        }
+        Arrays.fill(entries, live, end, null);
+        end = live;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<ContactEntry> iterator() {
+        return new Iterator<ContactEntry>() {
+
+            private int next = skipHoles(0);
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public ContactEntry next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                ContactEntry contact = entries[next];
+                next = skipHoles(next + 1);
+                return contact;
+            }
+        };
+    }
+
+    private int skipHoles(int position) {
+        while (position < end && entries[position] == null)
+            position++;
+        return position;
+    }
+}
@@ -105,12 +105,10 @@ public class ContactName {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result
-                + ((firstName == null) ? 0 : firstName.hashCode());
-        result = prime * result
-                + ((lastName == null) ? 0 : lastName.hashCode());
-        result = prime * result
-                + ((middleName == null) ? 0 : middleName.hashCode());
+        // case-insensitive, as equals() ignores case
+        result = prime * result + SearchKeys.hashIgnoreCase(firstName);
+        result = prime * result + SearchKeys.hashIgnoreCase(lastName);
+        result = prime * result + SearchKeys.hashIgnoreCase(middleName);
         return result;
     }
 
@@ -0,0 +1,320 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+/**
+ * Constructs a query combining several criteria on the fields of a contact,
+ * such as "last name Smith in city Boston with a gmail.com address", to be run
+ * by AddressBook.search(). A contact matches the query if it matches every
+ * criterion set; a query without criteria matches every contact. All criteria
+ * are exact matches ignoring case, except the phone number which is compared
+ * as is, the same way as the search methods of AddressBook compare them. A
+ * ContactQuery is immutable and can be run any number of times.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class ContactQuery {
+
+    private final ContactName name;
+    private final String firstName;
+    private final String lastName;
+    private final PhoneNumber phoneNumber;
+    private final PostalAddress postalAddress;
+    private final String city;
+    private final String state;
+    private final String zip;
+    private final String country;
+    private final EmailAddress emailId;
+    private final String emailDomain;
+    private final String note;
+
+    /**
+     * Builds a ContactQuery from any number of criteria, all of them optional.
+     * Setting a criterion to null removes it from the query.
+     *
+     * @author Hiral Mehta
+     *
+     */
+    public static class Builder {
+
+        // Optional parameters
+        private ContactName name;
+        private String firstName;
+        private String lastName;
+        private PhoneNumber phoneNumber;
+        private PostalAddress postalAddress;
+        private String city;
+        private String state;
+        private String zip;
+        private String country;
+        private EmailAddress emailId;
+        private String emailDomain;
+        private String note;
+
+        /**
+         * Instantiates a Builder for a query without criteria.
+         */
+        public Builder() {
+        }
+
+        /**
+         * Method to require the full name of the contact, as compared by
+         * AddressBook.searchContactByFullName().
+         *
+         * @param name
+         *            Full name of the contact
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder fullName(ContactName name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Method to require the first name of the contact.
+         *
+         * @param firstName
+         *            First name of the contact
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder firstName(String firstName) {
+            this.firstName = firstName;
+            return this;
+        }
+
+        /**
+         * Method to require the last name of the contact.
+         *
+         * @param lastName
+         *            Last name of the contact
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder lastName(String lastName) {
+            this.lastName = lastName;
+            return this;
+        }
+
+        /**
+         * Method to require the phone number of the contact.
+         *
+         * @param phoneNumber
+         *            Phone number of the contact
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder phoneNumber(PhoneNumber phoneNumber) {
+            this.phoneNumber = phoneNumber;
+            return this;
+        }
+
+        /**
+         * Method to require the complete postal address of the contact, as
+         * compared by AddressBook.searchContactByPostalAddress().
+         *
+         * @param postalAddress
+         *            Postal address of the contact
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder postalAddress(PostalAddress postalAddress) {
+            this.postalAddress = postalAddress;
+            return this;
+        }
+
+        /**
+         * Method to require the city of the postal address of the contact.
+         *
+         * @param city
+         *            City where the contact lives
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder city(String city) {
+            this.city = city;
+            return this;
+        }
+
+        /**
+         * Method to require the state of the postal address of the contact.
+         *
+         * @param state
+         *            State where the contact lives
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder state(String state) {
+            this.state = state;
+            return this;
+        }
+
+        /**
+         * Method to require the zip code of the postal address of the contact.
+         *
+         * @param zip
+         *            Zip code of the contact
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder zip(String zip) {
+            this.zip = zip;
+            return this;
+        }
+
+        /**
+         * Method to require the country of the postal address of the contact.
+         *
+         * @param country
+         *            Country where the contact lives
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder country(String country) {
+            this.country = country;
+            return this;
+        }
+
+        /**
+         * Method to require the complete email address of the contact.
+         *
+         * @param emailId
+         *            Email address of the contact
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder emailId(EmailAddress emailId) {
+            this.emailId = emailId;
+            return this;
+        }
+
+        /**
+         * Method to require the domain of the email address of the contact,
+         * which is the part after the '@', such as "gmail.com".
+         *
+         * @param emailDomain
+         *            Domain of the email address of the contact
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder emailDomain(String emailDomain) {
+            this.emailDomain = emailDomain;
+            return this;
+        }
+
+        /**
+         * Method to require the note of the contact.
+         *
+         * @param note
+         *            Note of the contact
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder note(String note) {
+            this.note = note;
+            return this;
+        }
+
+        /**
+         * Builds the actual ContactQuery object.
+         *
+         * @return The actual ContactQuery object
+         */
+        public ContactQuery build() {
+            return new ContactQuery(this);
+        }
+    }
+
+    /*
+     * This constructor kept private as it should not be invoked to create
+     * object of this class. Builder should be used instead.
+     */
+    private ContactQuery(Builder builder) {
+        name = builder.name;
+        firstName = builder.firstName;
+        lastName = builder.lastName;
+        phoneNumber = builder.phoneNumber;
+        postalAddress = builder.postalAddress;
+        city = builder.city;
+        state = builder.state;
+        zip = builder.zip;
+        country = builder.country;
+        emailId = builder.emailId;
+        emailDomain = builder.emailDomain;
+        note = builder.note;
+    }
+
+    /*
+     * The criteria are read by AddressBook, and are null if not set.
+     */
+
+    ContactName getName() {
+        return name;
+    }
+
+    String getFirstName() {
+        return firstName;
+    }
+
+    String getLastName() {
+        return lastName;
+    }
+
+    PhoneNumber getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    PostalAddress getPostalAddress() {
+        return postalAddress;
+    }
+
+    String getCity() {
+        return city;
+    }
+
+    String getState() {
+        return state;
+    }
+
+    String getZip() {
+        return zip;
+    }
+
+    String getCountry() {
+        return country;
+    }
+
+    EmailAddress getEmailId() {
+        return emailId;
+    }
+
+    String getEmailDomain() {
+        return emailDomain;
+    }
+
+    String getNote() {
+        return note;
+    }
+
+    /**
+     * Returns the criteria of the query.
+     */
+    @Override
+    public String toString() {
+        return "ContactQuery ["
+                + (name != null ? "name=" + name + ", " : "")
+                + (firstName != null ? "firstName=" + firstName + ", " : "")
+                + (lastName != null ? "lastName=" + lastName + ", " : "")
+                + (phoneNumber != null ? "phoneNumber=" + phoneNumber + ", "
+                        : "")
+                + (postalAddress != null ? "postalAddress=" + postalAddress
+                        + ", " : "")
+                + (city != null ? "city=" + city + ", " : "")
+                + (state != null ? "state=" + state + ", " : "")
+                + (zip != null ? "zip=" + zip + ", " : "")
+                + (country != null ? "country=" + country + ", " : "")
+                + (emailId != null ? "emailId=" + emailId + ", " : "")
+                + (emailDomain != null ? "emailDomain=" + emailDomain + ", "
+                        : "") + (note != null ? "note=" + note : "") + "]";
+    }
+}
@@ -0,0 +1,108 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * This is a helper class which reads the contacts of an address book file one
+ * at a time, so that only the current contact and the read buffers are held in
+ * memory whatever the size of the file. The format of the file is detected
+ * from its first bytes. This is not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+abstract class ContactReader implements Iterator<ContactEntry>, Closeable {
+
+    protected static final int BUFFER_SIZE = 1 << 16;
+
+    /*
+     * Shares the fields with few distinct values between the contacts read.
+     */
+    protected final Interner interner;
+
+    protected ContactReader(Interner interner) {
+        this.interner = interner;
+    }
+
+    /*
+     * Opens a reader for the file, which is either in binary format or in
+     * text format encoded with the given charset.
+     */
+    protected static ContactReader open(File file, Charset charset)
+            throws FileNotFoundException, IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file),
+                BUFFER_SIZE);
+        try {
+            if (startsWith(in, BinaryFormat.MAGIC))
+                return new BinaryContactReader(in);
+            if (startsWith(in, IndexedFormat.MAGIC)) {
+                in.close();
+                return new IndexedContactReader(MappedAddressBook.open(file));
+            }
+            return new TextContactReader(in, charset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /*
+     * Returns whether the stream starts with the magic bytes, leaving the
+     * stream at its start. The stream has to support mark() and reset().
+     */
+    private static boolean startsWith(InputStream in, byte[] magic)
+            throws IOException {
+        byte[] head = new byte[magic.length];
+        in.mark(magic.length);
+        int read = 0;
+        int n;
+        while (read < head.length
+                && (n = in.read(head, read, head.length - read)) > 0) {
+            read += n;
+        }
+        in.reset();
+        return read == head.length && Arrays.equals(head, magic);
+    }
+
+    /*
+     * Reads the contacts of a file in the indexed format through a
+     * MappedAddressBook, in the order they were saved.
+     */
+    private static class IndexedContactReader extends ContactReader {
+
+        private MappedAddressBook book;
+        private int next;
+
+        private IndexedContactReader(MappedAddressBook book) {
+            super(new Interner());
+            this.book = book;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < book.size();
+        }
+
+        @Override
+        public ContactEntry next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return book.get(next++, interner);
+        }
+
+        @Override
+        public void close() {
+            book.close();
+        }
+    }
+}
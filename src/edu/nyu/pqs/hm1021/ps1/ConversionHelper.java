@@ -1,6 +1,7 @@
 package edu.nyu.pqs.hm1021.ps1;
 
-import java.util.StringTokenizer;
+import java.io.IOException;
+import java.util.NoSuchElementException;
 
 /*
  * This is a helper class to convert a ContactEntry to a string and convert it
@@ -12,43 +13,97 @@ import java.util.StringTokenizer;
  */
 class ConversionHelper {
 
+    /*
+     * Number of fields of a contact in its String representation
+     */
+    protected static final int FIELD_COUNT = 12;
+
+    /*
+     * Field separator, written after every field of a contact
+     */
+    private static final String SEPARATOR = " ;;";
+
     /*
      * Convert the ContactEntry object to a String representation
      */
     protected static String buildStringFromContact(ContactEntry contact) {
-        String out = contact.getName().getFirstName() + " ;;"
-                + contact.getName().getLastName() + " ;;"
-                + contact.getName().getMiddleName() + " ;;"
-                + contact.getPhoneNumber().getPhoneNum() + " ;;"
-                + contact.getPostalAddress().getApt() + " ;;"
-                + contact.getPostalAddress().getStreet() + " ;;"
-                + contact.getPostalAddress().getCity() + " ;;"
-                + contact.getPostalAddress().getState() + " ;;"
-                + contact.getPostalAddress().getZip() + " ;;"
-                + contact.getPostalAddress().getCountry() + " ;;"
-                + contact.getEmailId().getEmailId() + " ;;" + contact.getNote()
-                + " ;;\n";
+        StringBuilder out = new StringBuilder(128);
+        try {
+            appendContact(out, contact);
+        } catch (IOException e) {
+            // StringBuilder.append() does not throw IOException
+            throw new AssertionError(e);
+        }
+        return out.toString();
+    }
 
-        return out;
+    /*
+     * Append the String representation of the ContactEntry object to out,
+     * field by field, without building the whole String first.
+     */
+    protected static void appendContact(Appendable out, ContactEntry contact)
+            throws IOException {
+        ContactName name = contact.getName();
+        PostalAddress address = contact.getPostalAddress();
+        out.append(name.getFirstName()).append(SEPARATOR);
+        out.append(name.getLastName()).append(SEPARATOR);
+        out.append(name.getMiddleName()).append(SEPARATOR);
+        out.append(contact.getPhoneNumber().getPhoneNum()).append(SEPARATOR);
+        out.append(address.getApt()).append(SEPARATOR);
+        out.append(address.getStreet()).append(SEPARATOR);
+        out.append(address.getCity()).append(SEPARATOR);
+        out.append(address.getState()).append(SEPARATOR);
+        out.append(address.getZip()).append(SEPARATOR);
+        out.append(address.getCountry()).append(SEPARATOR);
+        out.append(contact.getEmailId().getEmailId()).append(SEPARATOR);
+        out.append(contact.getNote()).append(SEPARATOR);
+        out.append('\n');
     }
 
     /*
-     * Convert the String object to a build a ContactEntry object
+     * Convert one line of an address book file to a ContactEntry object. The
+     * fields are the runs of characters between ';' characters, as a
+     * StringTokenizer with ";;" as delimiters would return them, trimmed.
+     * The fields with few distinct values are shared through the interner,
+     * unless it is null.
      */
-    protected static ContactEntry buildContact(StringTokenizer contactDetails) {
+    protected static ContactEntry buildContact(String line, Interner interner) {
+        String[] fields = new String[FIELD_COUNT];
+        int position = 0;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            while (position < line.length() && line.charAt(position) == ';')
+                position++;
+            if (position == line.length())
+                throw new NoSuchElementException("Contact has only " + i
+                        + " fields");
+            int end = line.indexOf(';', position);
+            if (end < 0)
+                end = line.length();
+            fields[i] = line.substring(position, end).trim();
+            position = end;
+        }
+        return buildContact(fields, interner);
+    }
 
-        String firstName = contactDetails.nextToken().trim();
-        String lastName = contactDetails.nextToken().trim();
-        String middleName = contactDetails.nextToken().trim();
-        String phone = contactDetails.nextToken().trim();
-        String apt = contactDetails.nextToken().trim();
-        String street = contactDetails.nextToken().trim();
-        String city = contactDetails.nextToken().trim();
-        String state = contactDetails.nextToken().trim();
-        String zip = contactDetails.nextToken().trim();
-        String country = contactDetails.nextToken().trim();
-        String emailId = contactDetails.nextToken().trim();
-        String note = contactDetails.nextToken().trim();
+    /*
+     * Convert the 12 fields of a contact, in the order of its String
+     * representation, to a ContactEntry object. The city, state and country
+     * are shared through the interner, unless it is null.
+     */
+    protected static ContactEntry buildContact(String[] fields,
+            Interner interner) {
+        String firstName = fields[0];
+        String lastName = fields[1];
+        String middleName = fields[2];
+        String phone = fields[3];
+        String apt = fields[4];
+        String street = fields[5];
+        String city = intern(interner, fields[6]);
+        String state = intern(interner, fields[7]);
+        String zip = fields[8];
+        String country = intern(interner, fields[9]);
+        String emailId = fields[10];
+        String note = fields[11];
 
         ContactName name = buildName(firstName, lastName, middleName);
         PhoneNumber phoneNum = new PhoneNumber(phone);
@@ -61,6 +116,10 @@ class ConversionHelper {
         return contact;
     }
 
+    private static String intern(Interner interner, String value) {
+        return (interner == null) ? value : interner.get(value);
+    }
+
     private static PostalAddress buildPostalAddress(String apt, String street,
             String city, String state, String zip, String country) {
 
@@ -0,0 +1,149 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * This is a helper class which implements BlockCodec.DEFLATE and
+ * BlockCodec.GZIP with java.util.zip. This is not part of the API.
+ *
+ * A DEFLATE block is a raw DEFLATE stream. A GZIP block is a complete GZIP
+ * member: a fixed 10 byte header without optional fields, the raw DEFLATE
+ * stream, and a trailer holding the CRC-32 and the length of the block. Every
+ * thread keeps its own Deflater and Inflater, which are reset for every block
+ * rather than allocated, as they hold native memory.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class DeflateCodec implements BlockCodec {
+
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b,
+            Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private final int id;
+    private final boolean gzip;
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters;
+
+    protected DeflateCodec(int id, boolean gzip, final int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION
+                && (level < Deflater.NO_COMPRESSION
+                        || level > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException(
+                    "Compression level must be between 0 and 9");
+        this.id = id;
+        this.gzip = gzip;
+        this.deflaters = new ThreadLocal<Deflater>() {
+            @Override
+            protected Deflater initialValue() {
+                return new Deflater(level, true);
+            }
+        };
+        this.inflaters = new ThreadLocal<Inflater>() {
+            @Override
+            protected Inflater initialValue() {
+                return new Inflater(true);
+            }
+        };
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public byte[] compress(byte[] bytes, int offset, int length)
+            throws IOException {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(bytes, offset, length);
+        deflater.finish();
+        int headerSize = gzip ? GZIP_HEADER.length : 0;
+        byte[] compressed = new byte[headerSize + length / 2 + 64];
+        int size = headerSize;
+        while (!deflater.finished()) {
+            if (size == compressed.length)
+                compressed = Arrays.copyOf(compressed, size * 2);
+            size += deflater.deflate(compressed, size, compressed.length
+                    - size);
+        }
+        if (!gzip)
+            return Arrays.copyOf(compressed, size);
+
+        System.arraycopy(GZIP_HEADER, 0, compressed, 0, GZIP_HEADER.length);
+        compressed = Arrays.copyOf(compressed, size + GZIP_TRAILER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        writeIntLE(compressed, size, (int) crc.getValue());
+        writeIntLE(compressed, size + 4, length);
+        return compressed;
+    }
+
+    @Override
+    public void decompress(byte[] bytes, int offset, int length, byte[] block,
+            int blockLength) throws IOException {
+        int start = offset;
+        int end = offset + length;
+        if (gzip) {
+            if (length < GZIP_HEADER.length + GZIP_TRAILER_SIZE
+                    || bytes[offset] != GZIP_HEADER[0]
+                    || bytes[offset + 1] != GZIP_HEADER[1]
+                    || bytes[offset + 2] != GZIP_HEADER[2]
+                    || bytes[offset + 3] != 0)
+                throw new IOException("Corrupt GZIP block header");
+            start += GZIP_HEADER.length;
+            end -= GZIP_TRAILER_SIZE;
+        }
+
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(bytes, start, end - start);
+        int size = 0;
+        try {
+            while (size < blockLength) {
+                int inflated = inflater.inflate(block, size, blockLength
+                        - size);
+                if (inflated == 0 && (inflater.finished()
+                        || inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                size += inflated;
+            }
+            // the end of the stream may follow the last byte of the block
+            if (!inflater.finished() && inflater.inflate(new byte[1]) != 0)
+                size++;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed block", e);
+        }
+        if (size != blockLength || !inflater.finished()
+                || inflater.getRemaining() != 0)
+            throw new IOException("Compressed block has the wrong length");
+
+        if (gzip) {
+            CRC32 crc = new CRC32();
+            crc.update(block, 0, blockLength);
+            if (readIntLE(bytes, end) != (int) crc.getValue()
+                    || readIntLE(bytes, end + 4) != blockLength)
+                throw new IOException("GZIP block checksum mismatch");
+        }
+    }
+
+    private static void writeIntLE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readIntLE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16
+                | (bytes[offset + 3] & 0xFF) << 24;
+    }
+}
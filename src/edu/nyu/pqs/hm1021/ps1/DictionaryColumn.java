@@ -0,0 +1,87 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * This is a helper class which stores a column of strings with few distinct
+ * values, such as cities or countries, as one int code per row into a
+ * dictionary of the distinct values. A search compares the given value to
+ * every value of the dictionary once, and then only compares the codes of the
+ * rows. This is not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class DictionaryColumn extends Column {
+
+    private int[] codes;
+    private int size;
+    private List<String> values;
+    private Map<String, Integer> codesByValue;
+
+    protected DictionaryColumn() {
+        codes = new int[16];
+        values = new ArrayList<String>();
+        codesByValue = new HashMap<String, Integer>();
+    }
+
+    @Override
+    protected void add(String value) {
+        Integer code = codesByValue.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(value);
+            codesByValue.put(value, code);
+        }
+        if (size == codes.length)
+            codes = Arrays.copyOf(codes, size * 2);
+        codes[size++] = code;
+    }
+
+    @Override
+    protected String get(int row) {
+        return values.get(codes[row]);
+    }
+
+    /*
+     * A null value, in the column or as the given one, is compared as the
+     * empty string, like the keys of the AddressBook indexes.
+     */
+    @Override
+    protected void retainIgnoreCase(String value, BitSet rows) {
+        String v = (value == null) ? "" : value;
+        boolean[] matching = new boolean[values.size()];
+        for (int code = 0; code < matching.length; code++) {
+            String s = values.get(code);
+            matching[code] = v.equalsIgnoreCase((s == null) ? "" : s);
+        }
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows
+                .nextSetBit(row + 1)) {
+            if (!matching[codes[row]])
+                rows.clear(row);
+        }
+    }
+
+    @Override
+    protected void findSubstring(String query, BitSet candidates,
+            BitSet matches) {
+        boolean[] matching = new boolean[values.size()];
+        boolean any = false;
+        for (int code = 0; code < matching.length; code++) {
+            matching[code] = containsLowerCase(values.get(code), query);
+            any = any || matching[code];
+        }
+        if (!any)
+            return;
+        for (int row = candidates.nextSetBit(0); row >= 0; row = candidates
+                .nextSetBit(row + 1)) {
+            if (matching[codes[row]])
+                matches.set(row);
+        }
+    }
+}
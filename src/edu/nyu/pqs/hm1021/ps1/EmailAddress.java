@@ -11,7 +11,7 @@ package edu.nyu.pqs.hm1021.ps1;
  */
 public class EmailAddress {
 
-    private String emailId = "";
+    private final String emailId;
 
     /**
      * Constructs an object of PhoneNumber. Imposes some restrictions on the
@@ -43,7 +43,8 @@ public class EmailAddress {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((emailId == null) ? 0 : emailId.hashCode());
+        // case-insensitive, as equals() ignores case
+        result = prime * result + SearchKeys.hashIgnoreCase(emailId);
         return result;
     }
 
@@ -11,9 +11,50 @@ package edu.nyu.pqs.hm1021.ps1;
  */
 class EmailAddressValidator {
 
-    private static final String regex = "^[a-zA-Z0-9_.+-]+@[a-zA-Z0-9-]+\\.[a-zA-Z0-9-.]+$|^$";
-
+    /*
+     * Accepts exactly the strings matched by the regular expression
+     *     ^[a-zA-Z0-9_.+-]+@[a-zA-Z0-9-]+\.[a-zA-Z0-9-.]+$|^$
+     * but scans the characters in a single pass instead of using
+     * String.matches(), which compiles the expression on every call.
+     */
     protected static boolean isValid(String emailAddress) {
-        return (emailAddress.matches(regex));
+        int length = emailAddress.length();
+        if (length == 0)
+            return true;
+
+        // local part: [a-zA-Z0-9_.+-]+ up to the '@'
+        int i = 0;
+        while (i < length && isLocalChar(emailAddress.charAt(i)))
+            i++;
+        if (i == 0 || i == length || emailAddress.charAt(i) != '@')
+            return false;
+        i++;
+
+        // first domain label: [a-zA-Z0-9-]+ up to the first '.'
+        int labelStart = i;
+        while (i < length && isDomainChar(emailAddress.charAt(i)))
+            i++;
+        if (i == labelStart || i == length || emailAddress.charAt(i) != '.')
+            return false;
+        i++;
+
+        // rest of the domain: [a-zA-Z0-9-.]+ up to the end
+        if (i == length)
+            return false;
+        for (; i < length; i++) {
+            char c = emailAddress.charAt(i);
+            if (!isDomainChar(c) && c != '.')
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isLocalChar(char c) {
+        return isDomainChar(c) || c == '_' || c == '.' || c == '+';
+    }
+
+    private static boolean isDomainChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9') || c == '-';
     }
-}
\ No newline at end of file
+}
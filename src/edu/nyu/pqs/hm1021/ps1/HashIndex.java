@@ -0,0 +1,125 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * This is a helper class which maps a search key to the contacts stored under
+ * that key, so that the address book can answer exact-match searches without
+ * scanning all the contacts. The contacts of a key are kept in the order in
+ * which they were added, which is also the order of the address book. This is
+ * not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class HashIndex {
+
+    private Map<String, ContactIdList> buckets;
+
+    protected HashIndex() {
+        this(new HashMap<String, ContactIdList>());
+    }
+
+    /*
+     * Creates an index which keeps its keys in the given empty map, so that a
+     * subclass can choose the kind of map.
+     */
+    protected HashIndex(Map<String, ContactIdList> buckets) {
+        this.buckets = buckets;
+    }
+
+    /*
+     * Creates a copy of the other index in the given empty map. The copy can
+     * be changed independently of the other index.
+     */
+    protected HashIndex(HashIndex other, Map<String, ContactIdList> buckets) {
+        this(buckets);
+        for (Map.Entry<String, ContactIdList> bucket : other.buckets
+                .entrySet()) {
+            buckets.put(bucket.getKey(), new ContactIdList(bucket.getValue()));
+        }
+    }
+
+    /*
+     * Returns a copy of the index which can be changed independently of it.
+     */
+    protected HashIndex copy() {
+        return new HashIndex(this, new HashMap<String, ContactIdList>(
+                buckets.size() * 4 / 3 + 1));
+    }
+
+    /*
+     * Adds the contact with the given id under the given key. Contacts with a
+     * null key are not indexed.
+     */
+    protected void add(String key, long id, ContactEntry contact) {
+        if (key == null)
+            return;
+        ContactIdList bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ContactIdList(1);
+            buckets.put(key, bucket);
+        }
+        bucket.add(id, contact);
+    }
+
+    /*
+     * Removes the contact with the given id from the given key.
+     */
+    protected void remove(String key, long id) {
+        if (key == null)
+            return;
+        ContactIdList bucket = buckets.get(key);
+        if (bucket == null)
+            return;
+        bucket.remove(id);
+        if (bucket.isEmpty())
+            buckets.remove(key);
+    }
+
+    /*
+     * Removes the first count contacts of ids, each from the key at the same
+     * position of keys. Every bucket is compacted at most once, after all the
+     * contacts are removed.
+     */
+    protected void removeAll(String[] keys, long[] ids, int count) {
+        Set<String> touched = new HashSet<String>();
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == null)
+                continue;
+            ContactIdList bucket = buckets.get(keys[i]);
+            if (bucket != null && bucket.tombstone(ids[i]) != null)
+                touched.add(keys[i]);
+        }
+        for (String key : touched) {
+            ContactIdList bucket = buckets.get(key);
+            if (bucket.isEmpty())
+                buckets.remove(key);
+            else
+                bucket.compactIfSparse();
+        }
+    }
+
+    /*
+     * Returns the contacts stored under the given key, or null if there are
+     * none. The returned list must not be changed.
+     */
+    protected ContactIdList bucket(String key) {
+        return (key == null) ? null : buckets.get(key);
+    }
+
+    /*
+     * Returns a fresh list of the contacts stored under the given key.
+     */
+    protected List<ContactEntry> get(String key) {
+        ContactIdList bucket = bucket(key);
+        if (bucket == null)
+            return new ArrayList<ContactEntry>();
+        return new ArrayList<ContactEntry>(bucket);
+    }
+}
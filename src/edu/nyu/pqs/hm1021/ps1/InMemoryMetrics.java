@@ -0,0 +1,179 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * InMemoryMetrics is a thread-safe MetricsListener which keeps a latency
+ * histogram per operation, the number of contacts scanned and matched per kind
+ * of search, and totals of the bytes read and written, contacts read and parse
+ * failures. The values can be read at any time, for instance by a monitoring
+ * system scraping them, and are cumulative until reset() is called. One
+ * instance can be shared by several address books.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class InMemoryMetrics implements MetricsListener {
+
+    private final Map<Operation, LatencyHistogram> latencies;
+    private final Map<Operation, LongAdder> scanned;
+    private final Map<Operation, LongAdder> matched;
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder contactsRead = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+
+    /**
+     * Constructs metrics with nothing recorded yet.
+     */
+    public InMemoryMetrics() {
+        // filled once, so they are only read concurrently
+        latencies = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+        scanned = new EnumMap<Operation, LongAdder>(Operation.class);
+        matched = new EnumMap<Operation, LongAdder>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            scanned.put(operation, new LongAdder());
+            matched.put(operation, new LongAdder());
+        }
+    }
+
+    @Override
+    public void searchCompleted(Operation operation, long nanos, int scanned,
+            int matched) {
+        latencies.get(operation).record(nanos);
+        this.scanned.get(operation).add(scanned);
+        this.matched.get(operation).add(matched);
+    }
+
+    @Override
+    public void saveCompleted(long nanos, long bytesWritten) {
+        latencies.get(Operation.SAVE).record(nanos);
+        this.bytesWritten.add(bytesWritten);
+    }
+
+    @Override
+    public void readCompleted(long nanos, long bytesRead, int contacts) {
+        latencies.get(Operation.READ).record(nanos);
+        this.bytesRead.add(bytesRead);
+        contactsRead.add(contacts);
+    }
+
+    @Override
+    public void parseFailed() {
+        parseFailures.increment();
+    }
+
+    /**
+     * Returns the histogram of the durations of an operation.
+     *
+     * @param operation
+     *            The operation
+     * @return Its latency histogram, which keeps recording
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    /**
+     * Returns the number of contacts the searches of the given kind looked at.
+     * Compared to getMatched(), it tells how selective the searches were.
+     *
+     * @param operation
+     *            One of the SEARCH_ operations
+     * @return Number of contacts scanned
+     */
+    public long getScanned(Operation operation) {
+        return scanned.get(operation).sum();
+    }
+
+    /**
+     * Returns the number of contacts the searches of the given kind returned.
+     *
+     * @param operation
+     *            One of the SEARCH_ operations
+     * @return Number of contacts matched
+     */
+    public long getMatched(Operation operation) {
+        return matched.get(operation).sum();
+    }
+
+    /**
+     * Returns the number of bytes of the files read completely.
+     *
+     * @return Number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Returns the number of bytes of the files saved.
+     *
+     * @return Number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Returns the number of contacts in the files read completely.
+     *
+     * @return Number of contacts read
+     */
+    public long getContactsRead() {
+        return contactsRead.sum();
+    }
+
+    /**
+     * Returns the number of reads which failed because a contact could not be
+     * parsed.
+     *
+     * @return Number of parse failures
+     */
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    /**
+     * Discards everything recorded so far.
+     */
+    public void reset() {
+        for (Operation operation : Operation.values()) {
+            latencies.get(operation).reset();
+            scanned.get(operation).reset();
+            matched.get(operation).reset();
+        }
+        bytesRead.reset();
+        bytesWritten.reset();
+        contactsRead.reset();
+        parseFailures.reset();
+    }
+
+    /**
+     * Returns a report of the operations performed so far, one per line.
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("InMemoryMetrics [\n");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram latency = latencies.get(operation);
+            if (latency.getCount() == 0)
+                continue;
+            report.append("  ").append(operation).append(": ")
+                    .append(latency);
+            if (operation != Operation.SAVE && operation != Operation.READ) {
+                report.append(", scanned=").append(getScanned(operation))
+                        .append(", matched=").append(getMatched(operation));
+            }
+            report.append('\n');
+        }
+        return report.append("  bytesRead=").append(getBytesRead())
+                .append(", bytesWritten=").append(getBytesWritten())
+                .append(", contactsRead=").append(getContactsRead())
+                .append(", parseFailures=").append(getParseFailures())
+                .append("\n]").toString();
+    }
+}
@@ -0,0 +1,79 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+/*
+ * This is a helper class which writes the contacts in the indexed file format
+ * read by MappedAddressBook, and holds the constants of the format. This is
+ * not part of the API.
+ *
+ * The file starts with the magic bytes and the version. The contacts follow,
+ * each encoded as in BinaryFormat. Then comes the index, the offset in the
+ * file of every contact as a long, and finally a trailer with the offset of
+ * the index and the number of contacts. A contact never crosses a multiple of
+ * SEGMENT_SIZE, and the index and the trailer are aligned to 8 bytes, so that
+ * the file can be mapped in segments of SEGMENT_SIZE bytes and every value
+ * read from a single segment.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class IndexedFormat {
+
+    protected static final byte[] MAGIC = { 0, 'A', 'B', 'X' };
+
+    protected static final int VERSION = 1;
+
+    protected static final int HEADER_SIZE = MAGIC.length + 4;
+
+    protected static final int TRAILER_SIZE = 16;
+
+    protected static final long SEGMENT_SIZE = 1L << 30;
+
+    private IndexedFormat() {
+    }
+
+    protected static void write(OutputStream stream,
+            Collection<ContactEntry> contacts) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+        long position = HEADER_SIZE;
+
+        long[] offsets = new long[contacts.size()];
+        ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        int count = 0;
+        for (ContactEntry contact : contacts) {
+            record.reset();
+            BinaryFormat.writeContact(record, contact);
+            if (record.size() > SEGMENT_SIZE)
+                throw new IOException("Contact too large to be indexed");
+            long segmentEnd = (position / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+            if (position + record.size() > segmentEnd)
+                position = pad(out, position, segmentEnd);
+            offsets[count++] = position;
+            record.writeTo(out);
+            position += record.size();
+        }
+
+        long indexOffset = pad(out, position, (position + 7) & ~7L);
+        for (long offset : offsets) {
+            out.writeLong(offset);
+        }
+        out.writeLong(indexOffset);
+        out.writeLong(count);
+        out.flush();
+    }
+
+    private static long pad(DataOutputStream out, long position, long target)
+            throws IOException {
+        for (; position < target; position++) {
+            out.write(0);
+        }
+        return position;
+    }
+}
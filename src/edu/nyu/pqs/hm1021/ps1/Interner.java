@@ -0,0 +1,38 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * This is a helper class which deduplicates the values of fields with few
+ * distinct values, such as the country, state and city of postal addresses,
+ * so that the contacts read from a file share a few hundred String objects
+ * instead of holding one each. This is not part of the API.
+ *
+ * Every read of a file has a dictionary of its own, which the contacts read
+ * share and which is dropped once the read is done. Values therefore stay in
+ * memory only as long as contacts hold them, and contacts built by the
+ * application, such as the ones given to a search, are never added. The
+ * dictionary is a concurrent map, as the threads of a parallel read share it.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class Interner {
+
+    private final ConcurrentHashMap<String, String> values;
+
+    protected Interner() {
+        this.values = new ConcurrentHashMap<String, String>();
+    }
+
+    /*
+     * Returns the instance of the dictionary equal to the value, adding the
+     * value to the dictionary if there is none.
+     */
+    protected String get(String value) {
+        if (value == null)
+            return null;
+        String shared = values.putIfAbsent(value, value);
+        return (shared == null) ? value : shared;
+    }
+}
@@ -0,0 +1,278 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/*
+ * This is a helper class which appends the changes made to a
+ * JournaledAddressBook to a journal file, and replays them into an address
+ * book. This is not part of the API.
+ *
+ * The file starts with the magic bytes and the version. The records follow:
+ * the length of the payload, the CRC-32 of the type and payload, the type, ADD
+ * or REMOVE, and the payload, which is the contact added or removed encoded as
+ * in BinaryFormat. A record is written by a single write at the end of the
+ * file, so a crash leaves at most a partial last record, which fails its
+ * checksum and is dropped when the journal is replayed.
+ *
+ * Records reach the disk when awaitDurable() returns. Threads waiting at the
+ * same time share a single force of the file: the first one forces all the
+ * records written so far, and the others wait for it to finish, so that a
+ * burst of concurrent changes costs one force instead of one each.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class Journal {
+
+    protected static final byte ADD = 1;
+    protected static final byte REMOVE = 2;
+
+    private static final byte[] MAGIC = { 0, 'A', 'B', 'J' };
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 4;
+    private static final int RECORD_HEADER_SIZE = 9;
+
+    private final FileChannel channel;
+    private final ByteArrayOutputStream payload;
+    private final CRC32 crc;
+
+    // sequence numbers of the last record written and forced to the disk
+    private long written;
+    private long durable;
+    private boolean forcing;
+
+    // set when a failed append could not be undone, see append()
+    private boolean failed;
+
+    private Journal(FileChannel channel) {
+        this.channel = channel;
+        this.payload = new ByteArrayOutputStream(256);
+        this.crc = new CRC32();
+    }
+
+    /*
+     * Opens the journal file for appending, and creates it if it does not
+     * exist. An existing file must have been replayed first, so that it ends
+     * with a complete record.
+     */
+    protected static Journal open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.put(MAGIC).putInt(VERSION).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                channel.force(true);
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new Journal(channel);
+    }
+
+    /*
+     * Applies the records of the journal file to the address book, in order,
+     * and returns the number of records applied. The first partial or corrupt
+     * record ends the journal: the file is truncated before it, so that new
+     * records follow the last complete one.
+     */
+    protected static int replay(File file, AddressBook book)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel), 1 << 16));
+            long length = channel.size();
+            long valid = 0;
+            int records = 0;
+            try {
+                byte[] magic = new byte[MAGIC.length];
+                in.readFully(magic);
+                if (!Arrays.equals(magic, MAGIC))
+                    throw new IOException("Not an address book journal");
+                int version = in.readInt();
+                if (version != VERSION)
+                    throw new IOException("Unsupported journal version "
+                            + version);
+                valid = HEADER_SIZE;
+
+                CRC32 crc = new CRC32();
+                byte[] bytes = new byte[256];
+                while (true) {
+                    int size = in.readInt();
+                    int checksum = in.readInt();
+                    byte type = in.readByte();
+                    if (size < 0 || size > length - valid)
+                        break;
+                    if (bytes.length < size)
+                        bytes = new byte[size];
+                    in.readFully(bytes, 0, size);
+                    crc.reset();
+                    crc.update(type);
+                    crc.update(bytes, 0, size);
+                    if ((int) crc.getValue() != checksum
+                            || (type != ADD && type != REMOVE))
+                        break;
+                    ContactEntry contact = BinaryFormat.readContact(bytes, 0,
+                            size);
+                    if (type == ADD)
+                        book.addContactEntry(contact);
+                    else
+                        book.removeContactEntry(contact);
+                    valid += RECORD_HEADER_SIZE + size;
+                    records++;
+                }
+            } catch (EOFException e) {
+                // a partial record, or a header cut short by a crash
+            }
+            // a partial header is written anew by open()
+            channel.truncate(valid);
+            return records;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /*
+     * Writes a record for the contact and returns its sequence number, to be
+     * passed to awaitDurable(). Appends must not run concurrently.
+     *
+     * A write which fails may leave part of the record in the file. It is
+     * truncated away, so that the next record follows the last complete one;
+     * records written after a partial one would be dropped by replay(). If
+     * the truncation fails too, the journal refuses any further append.
+     */
+    protected long append(byte type, ContactEntry contact) throws IOException {
+        if (failed)
+            throw new IOException("Journal failed, it must be reopened");
+        payload.reset();
+        BinaryFormat.writeContact(payload, contact);
+        byte[] bytes = payload.toByteArray();
+        crc.reset();
+        crc.update(type);
+        crc.update(bytes, 0, bytes.length);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE
+                + bytes.length);
+        record.putInt(bytes.length).putInt((int) crc.getValue()).put(type)
+                .put(bytes).flip();
+        long start = channel.position();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException truncation) {
+                failed = true;
+                e.addSuppressed(truncation);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            return ++written;
+        }
+    }
+
+    /*
+     * Returns the length of the journal file, records included.
+     */
+    protected long size() throws IOException {
+        return channel.position();
+    }
+
+    /*
+     * Returns once the record with the given sequence number, and all the ones
+     * before it, are on the disk. Forces the file unless another thread is
+     * already doing so, in which case its force may cover the record. A force
+     * which fails leaves the records in an unknown state, so the journal then
+     * refuses any further append.
+     */
+    protected void awaitDurable(long sequence) throws IOException {
+        long target;
+        synchronized (this) {
+            while (durable < sequence && forcing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(
+                            "Interrupted while waiting for the journal");
+                }
+            }
+            if (durable >= sequence)
+                return;
+            forcing = true;
+            target = written;
+        }
+        boolean forced = false;
+        try {
+            channel.force(false);
+            forced = true;
+        } finally {
+            synchronized (this) {
+                forcing = false;
+                if (forced)
+                    durable = Math.max(durable, target);
+                else
+                    failed = true;
+                notifyAll();
+            }
+        }
+    }
+
+    /*
+     * Forces the records written so far to the disk and closes the file.
+     */
+    protected void close() throws IOException {
+        synchronized (this) {
+            while (forcing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(
+                            "Interrupted while closing the journal");
+                }
+            }
+            // wait for no other force, the channel is about to be closed
+            forcing = true;
+        }
+        try {
+            long target;
+            synchronized (this) {
+                target = written;
+            }
+            channel.force(false);
+            synchronized (this) {
+                durable = target;
+            }
+        } finally {
+            channel.close();
+            synchronized (this) {
+                forcing = false;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JournaledAddressBook is a thread-safe address book persisted in a directory
+ * of its own, where every change is saved as it is made. Adding or removing a
+ * contact appends a compact record of the change to a journal file, instead
+ * of rewriting the whole address book as AddressBook.save() does, so that a
+ * change costs the same whatever the size of the address book. <br>
+ * The directory holds a full snapshot of the address book and the journal of
+ * the changes made since. Opening the directory reads the snapshot and
+ * replays the journal on top of it. Compaction writes a new snapshot holding
+ * the changes of the journal, and starts a new, empty journal; it runs in the
+ * background once the journal grows past a given size, or on demand. <br>
+ * A change is on the disk when the method making it returns. With group
+ * commit, threads changing the address book at the same time share the cost
+ * of forcing their changes to the disk. <br>
+ * Searches and changes are serialized by a single lock. Forcing changes to
+ * the disk and writing snapshots are done outside of it when possible.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class JournaledAddressBook implements Closeable {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String JOURNAL_PREFIX = "journal-";
+
+    private final File directory;
+    private final boolean groupCommit;
+    private final long compactAfter;
+
+    private final Object lock = new Object();
+    private final Object compactionLock = new Object();
+
+    // guarded by lock
+    private AddressBook book;
+    private Journal journal;
+    private long generation;
+    private boolean compactionScheduled;
+
+    private ExecutorService compactor;
+
+    /**
+     * Builds a JournaledAddressBook with optional features enabled.
+     *
+     * @author Hiral Mehta
+     *
+     */
+    public static class Builder {
+
+        // Required parameters
+        private File directory;
+
+        // Optional parameters
+        private boolean groupCommit = false;
+        private long compactAfter = 0;
+        private AddressBook.Builder addressBook = new AddressBook.Builder();
+
+        /**
+         * Instantiates a Builder for the address book persisted in the given
+         * directory.
+         *
+         * @param directory
+         *            Directory holding the snapshot and the journal
+         * @throws IllegalArgumentException
+         *             If directory is null
+         */
+        public Builder(File directory) {
+            if (directory == null)
+                throw new IllegalArgumentException(
+                        "Directory must not be null");
+            this.directory = directory;
+        }
+
+        /**
+         * Method to enable group commit. Without it, every change is forced to
+         * the disk on its own while the address book is locked. With it, the
+         * change is forced after the lock is released, and changes made by
+         * several threads meanwhile are forced together.
+         *
+         * @param enabled
+         *            true to commit changes in groups
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         */
+        public Builder groupCommit(boolean enabled) {
+            this.groupCommit = enabled;
+            return this;
+        }
+
+        /**
+         * Method to compact the journal in the background whenever it grows
+         * past the given number of bytes. By default the journal is only
+         * compacted by compact().
+         *
+         * @param bytes
+         *            Size of the journal which triggers a compaction, or 0
+         *            for none
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         * @throws IllegalArgumentException
+         *             If bytes is negative
+         */
+        public Builder compactAfter(long bytes) {
+            if (bytes < 0)
+                throw new IllegalArgumentException(
+                        "Journal size must not be negative");
+            this.compactAfter = bytes;
+            return this;
+        }
+
+        /**
+         * Method to set the Builder of the AddressBook holding the contacts in
+         * memory, to enable its optional features.
+         *
+         * @param builder
+         *            Builder of the in-memory address book
+         * @return Object of Builder() so as to allow invocation of other
+         *         optional parameter methods.
+         * @throws IllegalArgumentException
+         *             If builder is null
+         */
+        public Builder addressBook(AddressBook.Builder builder) {
+            if (builder == null)
+                throw new IllegalArgumentException(
+                        "Address book builder must not be null");
+            this.addressBook = builder;
+            return this;
+        }
+
+        /**
+         * Opens the address book of the directory, which is created if it does
+         * not exist. The last snapshot is read and the journal replayed on top
+         * of it. A record cut short by a crash ends the journal and is
+         * dropped.
+         *
+         * @return The JournaledAddressBook of the directory
+         * @throws IOException
+         *             If the directory could not be read or written
+         */
+        public JournaledAddressBook open() throws IOException {
+            return new JournaledAddressBook(this);
+        }
+    }
+
+    private JournaledAddressBook(Builder builder) throws IOException {
+        directory = builder.directory;
+        groupCommit = builder.groupCommit;
+        compactAfter = builder.compactAfter;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create directory " + directory);
+
+        // the newest snapshot is complete, as snapshots are written to a
+        // temporary file and renamed; the journals from its generation on
+        // hold the changes made since
+        List<Long> snapshots = generations(SNAPSHOT_PREFIX);
+        List<Long> journals = generations(JOURNAL_PREFIX);
+        long base = snapshots.isEmpty() ? 0 : snapshots
+                .get(snapshots.size() - 1);
+        book = builder.addressBook.build();
+        if (base > 0)
+            book.addAll(book.read(file(SNAPSHOT_PREFIX, base),
+                    StandardCharsets.UTF_8));
+        generation = base;
+        for (long journalGeneration : journals) {
+            if (journalGeneration >= base) {
+                Journal.replay(file(JOURNAL_PREFIX, journalGeneration), book);
+                generation = journalGeneration;
+            }
+        }
+        deleteBefore(base);
+        journal = Journal.open(file(JOURNAL_PREFIX, generation));
+
+        if (compactAfter > 0) {
+            compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "address book compaction");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds an entry to the address book and appends it to the journal. Same
+     * as AddressBook.addContactEntry(), except that entries which lack a
+     * postal address or email address are rejected as well, as they cannot be
+     * written to the journal; the ContactEntry.Builder always sets both.
+     *
+     * @param contact
+     *            An object of ContactEntry to be added
+     * @return true if the contact gets saved successfully <br>
+     *         false if contact is null or is rejected
+     * @throws IOException
+     *             If the journal could not be written or forced to the disk,
+     *             in which case the contact is not added in memory. Once a
+     *             failure leaves the journal in an unknown state, every
+     *             change fails until the directory is opened again. With
+     *             group commit, the contact is added before it is forced to
+     *             the disk, and stays added if forcing fails.
+     */
+    public boolean addContactEntry(ContactEntry contact) throws IOException {
+        if (!AddressBook.isAcceptable(contact)
+                || contact.getPostalAddress() == null
+                || contact.getEmailId() == null)
+            return false;
+        Journal target;
+        long sequence;
+        synchronized (lock) {
+            target = journal;
+            sequence = target.append(Journal.ADD, contact);
+            if (!groupCommit)
+                target.awaitDurable(sequence);
+            book.addContactEntry(contact);
+        }
+        committed(target, sequence);
+        return true;
+    }
+
+    /**
+     * Removes the first occurrence of a contact entry from the address book,
+     * and appends the removal to the journal. Same as
+     * AddressBook.removeContactEntry().
+     *
+     * @param contact
+     *            An object of ContactEntry to be removed
+     * @return true if the contact is removed successfully <br>
+     *         false if contact is null or not in the address book
+     * @throws IOException
+     *             If the journal could not be written or forced to the disk,
+     *             in which case the contact is not removed in memory. Once a
+     *             failure leaves the journal in an unknown state, every
+     *             change fails until the directory is opened again. With
+     *             group commit, the contact is removed before the removal
+     *             is forced to the disk, and stays removed if forcing
+     *             fails.
+     */
+    public boolean removeContactEntry(ContactEntry contact) throws IOException {
+        if (contact == null)
+            return false;
+        Journal target;
+        long sequence;
+        synchronized (lock) {
+            if (book.getContactId(contact) < 0)
+                return false;
+            target = journal;
+            sequence = target.append(Journal.REMOVE, contact);
+            if (!groupCommit)
+                target.awaitDurable(sequence);
+            book.removeContactEntry(contact);
+        }
+        committed(target, sequence);
+        return true;
+    }
+
+    /**
+     * Same as AddressBook.searchBySubString().
+     *
+     * @param searchString
+     *            Substring to be searched
+     * @return A list of contacts whose parameters contains the input substring
+     */
+    public List<ContactEntry> searchBySubString(String searchString) {
+        synchronized (lock) {
+            return book.searchBySubString(searchString);
+        }
+    }
+
+    /**
+     * Same as AddressBook.searchContactByFullName().
+     *
+     * @param name
+     *            Full name of the person to be searched
+     * @return A list of contacts whose full name matched the given input name.
+     */
+    public List<ContactEntry> searchContactByFullName(ContactName name) {
+        synchronized (lock) {
+            return book.searchContactByFullName(name);
+        }
+    }
+
+    /**
+     * Same as AddressBook.searchContactByFirstName().
+     *
+     * @param name
+     *            First name of the person to be searched
+     * @return A list of contacts whose first name matched the given input name.
+     */
+    public List<ContactEntry> searchContactByFirstName(ContactName name) {
+        synchronized (lock) {
+            return book.searchContactByFirstName(name);
+        }
+    }
+
+    /**
+     * Same as AddressBook.searchContactByLastName().
+     *
+     * @param name
+     *            Last name of the person to be searched
+     * @return A list of contacts whose last name matched the given input name
+     */
+    public List<ContactEntry> searchContactByLastName(ContactName name) {
+        synchronized (lock) {
+            return book.searchContactByLastName(name);
+        }
+    }
+
+    /**
+     * Same as AddressBook.searchContactByPhoneNumber().
+     *
+     * @param number
+     *            Phone number to be searched
+     * @return A list of contacts whose phone number matched the given number
+     */
+    public List<ContactEntry> searchContactByPhoneNumber(PhoneNumber number) {
+        synchronized (lock) {
+            return book.searchContactByPhoneNumber(number);
+        }
+    }
+
+    /**
+     * Same as AddressBook.searchContactByPostalAddress().
+     *
+     * @param address
+     *            Complete postal address of the person to be searched
+     * @return A list of contacts whose postal address matched the given input.
+     */
+    public List<ContactEntry> searchContactByPostalAddress(PostalAddress address) {
+        synchronized (lock) {
+            return book.searchContactByPostalAddress(address);
+        }
+    }
+
+    /**
+     * Same as AddressBook.searchContactByEmailAddress().
+     *
+     * @param emailId
+     *            Complete email address of the person to be searched
+     * @return A list of contacts whose email address matched the given input
+     */
+    public List<ContactEntry> searchContactByEmailAddress(EmailAddress emailId) {
+        synchronized (lock) {
+            return book.searchContactByEmailAddress(emailId);
+        }
+    }
+
+    /**
+     * Same as AddressBook.searchContactByNote().
+     *
+     * @param note
+     *            Note of the person to be searched
+     * @return A list of contacts whose note matched the given input
+     */
+    public List<ContactEntry> searchContactByNote(String note) {
+        synchronized (lock) {
+            return book.searchContactByNote(note);
+        }
+    }
+
+    /**
+     * Same as AddressBook.search(ContactQuery).
+     *
+     * @param query
+     *            Criteria the contacts have to match
+     * @return A list of contacts matching the query
+     */
+    public List<ContactEntry> search(ContactQuery query) {
+        synchronized (lock) {
+            return book.search(query);
+        }
+    }
+
+    /**
+     * Folds the journal into a new snapshot. A new journal is started for the
+     * changes made from now on, which are not blocked while the snapshot is
+     * written; the old journal and snapshot are deleted once the new snapshot
+     * is complete. A crash at any point leaves the directory holding either
+     * the old or the new snapshot with the journals of the changes made since.
+     *
+     * @throws IOException
+     *             If the snapshot or the new journal could not be written
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            List<ContactEntry> contacts;
+            long next;
+            synchronized (lock) {
+                contacts = book.contacts();
+                next = generation + 1;
+                Journal old = journal;
+                journal = Journal.open(file(JOURNAL_PREFIX, next));
+                generation = next;
+                old.close();
+            }
+            AddressBook.write(file(SNAPSHOT_PREFIX, next),
+                    AddressBook.FileFormat.CHECKSUMMED_BINARY,
+                    StandardCharsets.UTF_8, null, contacts);
+            // write() forced the directory, so the new snapshot and journal
+            // survive a crash which would otherwise find neither
+            deleteBefore(next);
+        }
+    }
+
+    /**
+     * Waits for a background compaction to finish, and closes the journal.
+     * The address book must not be used afterwards.
+     *
+     * @throws IOException
+     *             If the journal could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (lock) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Returns a summary of the address book.
+     */
+    @Override
+    public String toString() {
+        return "JournaledAddressBook [directory=" + directory + "]";
+    }
+
+    /*
+     * Waits for the change to reach the disk with group commit, and schedules
+     * a compaction if the journal has grown too large.
+     */
+    private void committed(Journal target, long sequence) throws IOException {
+        if (groupCommit)
+            target.awaitDurable(sequence);
+        if (compactAfter == 0)
+            return;
+        synchronized (lock) {
+            if (compactionScheduled || journal.size() < compactAfter)
+                return;
+            compactionScheduled = true;
+        }
+        try {
+            compactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    } catch (IOException e) {
+                        // the journal still holds every change, the next
+                        // change schedules another attempt
+                    } finally {
+                        synchronized (lock) {
+                            compactionScheduled = false;
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the address book is being closed
+            synchronized (lock) {
+                compactionScheduled = false;
+            }
+        }
+    }
+
+    private File file(String prefix, long fileGeneration) {
+        return new File(directory, prefix + fileGeneration);
+    }
+
+    /*
+     * Returns the generations of the files with the given prefix, in
+     * increasing order.
+     */
+    private List<Long> generations(String prefix) throws IOException {
+        String[] names = directory.list();
+        if (names == null)
+            throw new IOException("Cannot list directory " + directory);
+        List<Long> generations = new ArrayList<Long>();
+        for (String name : names) {
+            if (!name.startsWith(prefix))
+                continue;
+            try {
+                generations.add(Long.parseLong(name.substring(prefix
+                        .length())));
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /*
+     * Deletes the snapshots and journals older than the given generation,
+     * which the snapshot of that generation holds.
+     */
+    private void deleteBefore(long base) throws IOException {
+        for (String prefix : new String[] { SNAPSHOT_PREFIX, JOURNAL_PREFIX }) {
+            for (long fileGeneration : generations(prefix)) {
+                if (fileGeneration < base && !file(prefix, fileGeneration)
+                        .delete())
+                    throw new IOException("Cannot delete "
+                            + file(prefix, fileGeneration));
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram counts durations in nanoseconds in buckets of logarithmic
+ * width, in the manner of HdrHistogram. Durations below 128 ns are counted
+ * exactly, and larger ones in 64 buckets per power of two, so a percentile is
+ * reported within 1.6% of the actual duration while the histogram keeps a
+ * fixed size of about 30 KB whatever the number and range of the durations.
+ * <br>
+ * Recording is thread-safe and does not block. Reading while other threads
+ * record gives a close, but not necessarily consistent, view.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class LatencyHistogram {
+
+    private static final int EXACT = 128;
+    private static final int SUB_BUCKETS = 64;
+    private static final int SUB_BUCKET_BITS = 6;
+    // the largest long has its top bit at position 62
+    private static final int BUCKETS = EXACT + (62 - SUB_BUCKET_BITS)
+            * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a duration. Negative durations are counted as 0.
+     *
+     * @param nanos
+     *            Duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return Number of durations
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the longest recorded duration, exactly.
+     *
+     * @return Longest duration in nanoseconds, 0 if none was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded durations, exactly.
+     *
+     * @return Mean duration in nanoseconds, 0 if none was recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return (n == 0) ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the duration below or at which the given percentage of the
+     * recorded durations lie, such as 99 for the 99th percentile.
+     *
+     * @param percentile
+     *            Percentage between 0 and 100
+     * @return Duration in nanoseconds, 0 if none was recorded
+     * @throws IllegalArgumentException
+     *             If percentile is not between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException("Percentile must be between 0"
+                    + " and 100");
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return Math.min(highestValueOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Discards all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Returns the count, mean and main percentiles in microseconds.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "count=%d, mean=%.1fus, p50=%.1fus, p99=%.1fus, "
+                        + "p99.9=%.1fus, max=%.1fus", getCount(),
+                getMean() / 1e3, getValueAtPercentile(50) / 1e3,
+                getValueAtPercentile(99) / 1e3,
+                getValueAtPercentile(99.9) / 1e3, getMax() / 1e3);
+    }
+
+    /*
+     * Values below EXACT have a bucket each. A larger value is shifted right
+     * until it lies between SUB_BUCKETS and EXACT, and the number of shifts
+     * selects a group of SUB_BUCKETS buckets.
+     */
+    private static int bucketOf(long value) {
+        if (value < EXACT)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return EXACT + (shift - 1) * SUB_BUCKETS
+                + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /*
+     * Returns the largest value counted in the bucket.
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < EXACT)
+            return bucket;
+        int shift = (bucket - EXACT) / SUB_BUCKETS + 1;
+        long top = (bucket - EXACT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
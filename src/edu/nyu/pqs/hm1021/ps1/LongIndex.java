@@ -0,0 +1,166 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+/*
+ * This is a helper class which maps positive long keys to the contacts stored
+ * under them, like HashIndex does for strings but without boxing the keys. It
+ * is an open-addressing hash table with linear probing: keys and buckets live
+ * in two parallel arrays, 0 marks a free slot, and a removed key is filled in
+ * by shifting back the keys probed after it, so that no tombstones are left.
+ * This is not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class LongIndex {
+
+    private static final long EMPTY = 0;
+
+    private long[] keys;
+    private ContactIdList[] buckets;
+    private int size;
+
+    protected LongIndex() {
+        keys = new long[16];
+        buckets = new ContactIdList[16];
+    }
+
+    /*
+     * Creates a copy of the index which can be changed independently of it.
+     */
+    protected LongIndex(LongIndex other) {
+        keys = other.keys.clone();
+        buckets = new ContactIdList[other.buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            if (other.buckets[i] != null)
+                buckets[i] = new ContactIdList(other.buckets[i]);
+        }
+        size = other.size;
+    }
+
+    /*
+     * Adds the contact with the given id under the given key, which must be
+     * positive.
+     */
+    protected void add(long key, long id, ContactEntry contact) {
+        if (key <= EMPTY)
+            throw new IllegalArgumentException("Keys must be positive");
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            if ((size + 1) * 3 > keys.length * 2) {
+                grow();
+                slot = find(key);
+            }
+            keys[slot] = key;
+            buckets[slot] = new ContactIdList(1);
+            size++;
+        }
+        buckets[slot].add(id, contact);
+    }
+
+    /*
+     * Removes the contact with the given id from the given key.
+     */
+    protected void remove(long key, long id) {
+        if (key <= EMPTY)
+            return;
+        int slot = find(key);
+        if (keys[slot] == EMPTY)
+            return;
+        buckets[slot].remove(id);
+        if (buckets[slot].isEmpty())
+            delete(slot);
+    }
+
+    /*
+     * Removes the first count contacts of ids, each from the key at the same
+     * position of keys. Every bucket is compacted at most once, after all the
+     * contacts are removed.
+     */
+    protected void removeAll(long[] removedKeys, long[] ids, int count) {
+        long[] touched = new long[count];
+        int touchedCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (removedKeys[i] <= EMPTY)
+                continue;
+            int slot = find(removedKeys[i]);
+            if (keys[slot] != EMPTY
+                    && buckets[slot].tombstone(ids[i]) != null)
+                touched[touchedCount++] = removedKeys[i];
+        }
+        // a key touched twice is found free the second time if deleted
+        for (int i = 0; i < touchedCount; i++) {
+            int slot = find(touched[i]);
+            if (keys[slot] == EMPTY)
+                continue;
+            if (buckets[slot].isEmpty())
+                delete(slot);
+            else
+                buckets[slot].compactIfSparse();
+        }
+    }
+
+    /*
+     * Returns the contacts stored under the given key, or null if there are
+     * none. The returned list must not be changed.
+     */
+    protected ContactIdList bucket(long key) {
+        if (key <= EMPTY)
+            return null;
+        return buckets[find(key)];
+    }
+
+    /*
+     * Returns the slot holding the key, or the free slot where it would be
+     * inserted.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /*
+     * Frees the slot, and moves back every following key of the same probe
+     * run which could otherwise no longer be found.
+     */
+    private void delete(int slot) {
+        int mask = keys.length - 1;
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            // the key may move to the free slot if that lies cyclically
+            // between its home slot and its current slot
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                buckets[free] = buckets[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[free] = EMPTY;
+        buckets[free] = null;
+        size--;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        ContactIdList[] oldBuckets = buckets;
+        keys = new long[oldKeys.length * 2];
+        buckets = new ContactIdList[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                buckets[slot] = oldBuckets[i];
+            }
+        }
+    }
+}
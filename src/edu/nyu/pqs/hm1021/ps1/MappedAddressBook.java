@@ -0,0 +1,542 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * MappedAddressBook is a read-only address book backed by a memory-mapped file
+ * saved by AddressBook in the INDEXED format. Opening it only maps the file, so
+ * it takes the same time whatever the size of the book, and the contacts stay
+ * off the Java heap. Searches compare the encoded fields in place, and a
+ * ContactEntry is only decoded for the contacts that are returned. <br>
+ * The searches have the same semantics as the ones of AddressBook, but scan
+ * all the contacts. A MappedAddressBook never changes, and can be used by many
+ * threads at once. Once it is no longer needed it should be closed, which
+ * drops its references to the mapping; Java offers no way to unmap a file, so
+ * the mapping itself is released when the garbage collector reclaims it.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public class MappedAddressBook implements Closeable {
+
+    private static final int FIELD_COUNT = ConversionHelper.FIELD_COUNT;
+
+    // positions of the fields in a record
+    private static final int FIRSTNAME = 0;
+    private static final int LASTNAME = 1;
+    private static final int MIDDLENAME = 2;
+    private static final int PHONENUMBER = 3;
+    private static final int APT = 4;
+    private static final int STREET = 5;
+    private static final int CITY = 6;
+    private static final int STATE = 7;
+    private static final int COUNTRY = 9;
+    private static final int EMAILID = 10;
+    private static final int NOTE = 11;
+
+    // appended to every field, and the line break after the last one, in
+    // the text searched by searchBySubString(), as in ConversionHelper
+    private static final byte[] SEPARATOR = { ' ', ';', ';' };
+    private static final byte LINE_END = '\n';
+
+    private static final String UPPER_CASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private ByteBuffer[] segments;
+    private long indexOffset;
+    private int size;
+
+    /*
+     * Kept private, as a MappedAddressBook can only be created by open()
+     */
+    private MappedAddressBook(ByteBuffer[] segments, long indexOffset, int size) {
+        this.segments = segments;
+        this.indexOffset = indexOffset;
+        this.size = size;
+    }
+
+    /**
+     * Maps an address book file saved in the INDEXED format. The file must not
+     * be modified while it is mapped.
+     *
+     * @param file
+     *            File saved with AddressBook.FileFormat.INDEXED
+     * @return A read-only address book of the contacts in the file
+     * @throws IOException
+     *             If the file could not be mapped or is not in INDEXED format
+     */
+    public static MappedAddressBook open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            if (length < IndexedFormat.HEADER_SIZE + IndexedFormat.TRAILER_SIZE)
+                throw new IOException("Not an indexed address book");
+
+            int segmentCount = (int) ((length - 1) / IndexedFormat.SEGMENT_SIZE) + 1;
+            ByteBuffer[] segments = new ByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long start = i * IndexedFormat.SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(IndexedFormat.SEGMENT_SIZE, length - start));
+            }
+
+            byte[] magic = new byte[IndexedFormat.MAGIC.length];
+            for (int i = 0; i < magic.length; i++) {
+                magic[i] = segments[0].get(i);
+            }
+            if (!Arrays.equals(magic, IndexedFormat.MAGIC))
+                throw new IOException("Not an indexed address book");
+            int version = segments[0].getInt(magic.length);
+            if (version != IndexedFormat.VERSION)
+                throw new IOException("Unsupported address book version "
+                        + version);
+
+            MappedAddressBook book = new MappedAddressBook(segments, 0, 0);
+            long trailer = length - IndexedFormat.TRAILER_SIZE;
+            long indexOffset = book.getLong(trailer);
+            long size = book.getLong(trailer + 8);
+            if (size < 0 || size > Integer.MAX_VALUE || indexOffset < 0
+                    || indexOffset + 8 * size != trailer)
+                throw new IOException("Corrupt indexed address book");
+            book.indexOffset = indexOffset;
+            book.size = (int) size;
+            return book;
+        } finally {
+            // the mapping stays valid after the channel is closed
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the number of contacts in the address book
+     *
+     * @return number of contacts
+     */
+    public int size() {
+        checkOpen();
+        return size;
+    }
+
+    /**
+     * Returns the contact at the given position, in the order the contacts
+     * were saved.
+     *
+     * @param index
+     *            Position of the contact, from 0 to size() - 1
+     * @return The contact at that position
+     * @throws IndexOutOfBoundsException
+     *             If there is no contact at that position
+     */
+    public ContactEntry get(int index) {
+        return get(index, null);
+    }
+
+    /*
+     * Returns the contact at the given position, sharing its fields with few
+     * distinct values through the interner unless it is null, so that reading
+     * a whole file shares them like the other formats do.
+     */
+    ContactEntry get(int index, Interner interner) {
+        checkOpen();
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size);
+        Record record = new Record();
+        record.read(index);
+        return record.toContact(interner);
+    }
+
+    /**
+     * Searches through out the address book for the substring passed by the
+     * user. Same as AddressBook.searchBySubString(). Contacts made of ASCII
+     * characters only are matched on their encoded fields in place; the
+     * others are decoded to be matched, as their case may not fold byte by
+     * byte.
+     *
+     * @param searchString
+     *            Substring to be searched
+     * @return A list of contacts whose parameters contains the input substring
+     */
+    public List<ContactEntry> searchBySubString(String searchString) {
+        checkOpen();
+        String query = searchString.toLowerCase();
+        byte[] encoded = query.getBytes(StandardCharsets.UTF_8);
+        // false in locales where an upper case ASCII letter does not lower to
+        // its ASCII counterpart, such as the dotless i of Turkish
+        boolean asciiFolds = UPPER_CASE.toLowerCase().equals(
+                UPPER_CASE.toLowerCase(Locale.ROOT));
+        List<ContactEntry> output = new ArrayList<ContactEntry>();
+        Record record = new Record();
+        byte[] text = new byte[256];
+        for (int i = 0; i < size; i++) {
+            record.read(i);
+            int length = record.textLength();
+            if (length > text.length)
+                text = new byte[Math.max(length, 2 * text.length)];
+            boolean matches;
+            if (asciiFolds && record.foldText(text))
+                matches = indexOf(text, length, encoded) >= 0;
+            else
+                matches = record.decodeText().toLowerCase().contains(query);
+            if (matches)
+                output.add(record.toContact(null));
+        }
+        return output;
+    }
+
+    /**
+     * Searches throughout the address book for the contact whose full name
+     * matches the full name given as input. Same as
+     * AddressBook.searchContactByFullName().
+     *
+     * @param name
+     *            Full name of the person to be searched
+     * @return A list of contacts whose full name matched the given input name.
+     */
+    public List<ContactEntry> searchContactByFullName(ContactName name) {
+        if (name == null)
+            return new ArrayList<ContactEntry>();
+        return search(new int[] { FIRSTNAME, LASTNAME, MIDDLENAME },
+                new String[] { name.getFirstName(), name.getLastName(),
+                        name.getMiddleName() }, true);
+    }
+
+    /**
+     * Searches through out the address book for the contact whose first name
+     * matches the first name given as input. Same as
+     * AddressBook.searchContactByFirstName().
+     *
+     * @param name
+     *            First name of the person to be searched
+     * @return A list of contacts whose first name matched the given input name.
+     */
+    public List<ContactEntry> searchContactByFirstName(ContactName name) {
+        if (name == null)
+            return new ArrayList<ContactEntry>();
+        return search(new int[] { FIRSTNAME },
+                new String[] { name.getFirstName() }, true);
+    }
+
+    /**
+     * Searches through out the address book for the contact whose last name
+     * matches the last name given as input. Same as
+     * AddressBook.searchContactByLastName().
+     *
+     * @param name
+     *            Last name of the person to be searched
+     * @return A list of contacts whose last name matched the given input name
+     */
+    public List<ContactEntry> searchContactByLastName(ContactName name) {
+        if (name == null)
+            return new ArrayList<ContactEntry>();
+        return search(new int[] { LASTNAME },
+                new String[] { name.getLastName() }, true);
+    }
+
+    /**
+     * Searches through out the address book for the contact whose phone number
+     * matches the phone number provided as input. Same as
+     * AddressBook.searchContactByPhoneNumber().
+     *
+     * @param number
+     *            Phone number to be searched
+     * @return A list of contacts whose phone number matched the given number
+     */
+    public List<ContactEntry> searchContactByPhoneNumber(PhoneNumber number) {
+        if (number == null)
+            return new ArrayList<ContactEntry>();
+        return search(new int[] { PHONENUMBER },
+                new String[] { number.getPhoneNum() }, false);
+    }
+
+    /**
+     * Searches through out the address book for the contact whose Postal
+     * Address matches the address given as input. Same as
+     * AddressBook.searchContactByPostalAddress().
+     *
+     * @param address
+     *            Complete postal address of the person to be searched
+     * @return A list of contacts whose postal address matched the given input.
+     */
+    public List<ContactEntry> searchContactByPostalAddress(PostalAddress address) {
+        if (address == null)
+            return new ArrayList<ContactEntry>();
+        return search(new int[] { APT, STREET, CITY, STATE, COUNTRY },
+                new String[] { address.getApt(), address.getStreet(),
+                        address.getCity(), address.getState(),
+                        address.getCountry() }, true);
+    }
+
+    /**
+     * Searches through out the address book for the contact whose email address
+     * matches the email address given as input. Same as
+     * AddressBook.searchContactByEmailAddress().
+     *
+     * @param emailId
+     *            Complete email address of the person to be searched
+     * @return A list of contacts whose email address matched the given input
+     */
+    public List<ContactEntry> searchContactByEmailAddress(EmailAddress emailId) {
+        if (emailId == null)
+            return new ArrayList<ContactEntry>();
+        return search(new int[] { EMAILID },
+                new String[] { emailId.getEmailId() }, true);
+    }
+
+    /**
+     * Searches through out the address book for the contact whose saved note
+     * matches the note given as input. Same as
+     * AddressBook.searchContactByNote().
+     *
+     * @param note
+     *            Note of the person to be searched
+     * @return A list of contacts whose note matched the given input
+     */
+    public List<ContactEntry> searchContactByNote(String note) {
+        if (note == null)
+            return new ArrayList<ContactEntry>();
+        return search(new int[] { NOTE }, new String[] { note }, true);
+    }
+
+    /**
+     * Releases the mapped file. The address book cannot be used once it is
+     * closed, and must not be closed while other threads use it. Closing it
+     * again has no effect.
+     */
+    @Override
+    public void close() {
+        segments = null;
+    }
+
+    /**
+     * Returns a summary of the address book.
+     */
+    @Override
+    public String toString() {
+        return "MappedAddressBook [addressBook=" + size + " contacts]";
+    }
+
+    /*
+     * Returns the contacts whose given fields all equal the given values,
+     * ignoring case or not. The values are encoded once, and compared to the
+     * fields in the mapped file without decoding them.
+     */
+    private List<ContactEntry> search(int[] fields, String[] values,
+            boolean ignoreCase) {
+        checkOpen();
+        byte[][] encoded = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            String value = (values[i] == null) ? "" : values[i];
+            values[i] = value;
+            encoded[i] = value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        List<ContactEntry> output = new ArrayList<ContactEntry>();
+        Record record = new Record();
+        for (int i = 0; i < size; i++) {
+            record.read(i);
+            boolean matches = true;
+            for (int j = 0; j < fields.length && matches; j++) {
+                matches = ignoreCase ? record.equalsIgnoreCase(fields[j],
+                        values[j], encoded[j]) : record.equalsExactly(fields[j],
+                        encoded[j]);
+            }
+            if (matches)
+                output.add(record.toContact(null));
+        }
+        return output;
+    }
+
+    private void checkOpen() {
+        if (segments == null)
+            throw new IllegalStateException("Address book is closed");
+    }
+
+    /*
+     * Returns the position of the first occurrence of the pattern in the
+     * first length bytes of text, or -1 if there is none.
+     */
+    private static int indexOf(byte[] text, int length, byte[] pattern) {
+        if (pattern.length == 0)
+            return 0;
+        byte first = pattern[0];
+        int last = length - pattern.length;
+        for (int i = 0; i <= last; i++) {
+            if (text[i] != first)
+                continue;
+            int j = 1;
+            while (j < pattern.length && text[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length)
+                return i;
+        }
+        return -1;
+    }
+
+    private long getLong(long position) {
+        return segments[(int) (position / IndexedFormat.SEGMENT_SIZE)]
+                .getLong((int) (position % IndexedFormat.SEGMENT_SIZE));
+    }
+
+    private static boolean isAscii(byte b) {
+        return b >= 0;
+    }
+
+    private static byte foldAscii(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /*
+     * The location of the fields of one contact in the mapped file. It is
+     * reused from contact to contact during a search, so as not to allocate
+     * anything for the contacts which do not match.
+     */
+    private class Record {
+
+        private ByteBuffer segment;
+        private int[] start = new int[FIELD_COUNT];
+        private int[] length = new int[FIELD_COUNT];
+
+        private void read(int index) {
+            long offset = getLong(indexOffset + 8L * index);
+            segment = segments[(int) (offset / IndexedFormat.SEGMENT_SIZE)];
+            int position = (int) (offset % IndexedFormat.SEGMENT_SIZE);
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                int fieldLength = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = segment.get(position++);
+                    fieldLength |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                start[field] = position;
+                length[field] = fieldLength;
+                position += fieldLength;
+            }
+        }
+
+        private String decode(int field) {
+            byte[] bytes = new byte[length[field]];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = segment.get(start[field] + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /*
+         * Returns the length in bytes of the text searched by
+         * searchBySubString(): every field followed by the separator, and a
+         * line break.
+         */
+        private int textLength() {
+            int length = FIELD_COUNT * SEPARATOR.length + 1;
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                length += this.length[field];
+            }
+            return length;
+        }
+
+        /*
+         * Writes the text searched by searchBySubString() to the start of
+         * text, with ASCII letters in lower case, and returns true, or returns
+         * false as soon as a byte is not ASCII.
+         */
+        private boolean foldText(byte[] text) {
+            int position = 0;
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                int fieldStart = start[field];
+                int fieldEnd = fieldStart + length[field];
+                for (int i = fieldStart; i < fieldEnd; i++) {
+                    byte b = segment.get(i);
+                    if (!isAscii(b))
+                        return false;
+                    text[position++] = foldAscii(b);
+                }
+                for (byte b : SEPARATOR) {
+                    text[position++] = b;
+                }
+            }
+            text[position] = LINE_END;
+            return true;
+        }
+
+        /*
+         * Returns the text searched by searchBySubString(), decoded as is.
+         */
+        private String decodeText() {
+            StringBuilder text = new StringBuilder(textLength());
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                text.append(decode(field)).append(" ;;");
+            }
+            return text.append('\n').toString();
+        }
+
+        private ContactEntry toContact(Interner interner) {
+            String[] fields = new String[FIELD_COUNT];
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                fields[field] = decode(field);
+            }
+            return ConversionHelper.buildContact(fields, interner);
+        }
+
+        private boolean equalsExactly(int field, byte[] value) {
+            if (length[field] != value.length)
+                return false;
+            for (int i = 0; i < value.length; i++) {
+                if (segment.get(start[field] + i) != value[i])
+                    return false;
+            }
+            return true;
+        }
+
+        /*
+         * Compares ASCII bytes in place. Non-ASCII characters may equal
+         * characters of a different encoded length when case is ignored, so
+         * the field is decoded and compared as a String as soon as one shows
+         * up where the bytes differ.
+         */
+        private boolean equalsIgnoreCase(int field, String value,
+                byte[] encoded) {
+            int fieldStart = start[field];
+            int fieldLength = length[field];
+            if (fieldLength == encoded.length) {
+                int i = 0;
+                for (; i < fieldLength; i++) {
+                    byte b = segment.get(fieldStart + i);
+                    byte v = encoded[i];
+                    if (b == v)
+                        continue;
+                    if (!isAscii(b) || !isAscii(v))
+                        break;
+                    if (foldAscii(b) != foldAscii(v))
+                        return false;
+                }
+                if (i == fieldLength)
+                    return true;
+            } else if (isAsciiField(field) && value.length() == encoded.length) {
+                return false;
+            }
+            return decode(field).equalsIgnoreCase(value);
+        }
+
+        private boolean isAsciiField(int field) {
+            for (int i = 0; i < length[field]; i++) {
+                if (!isAscii(segment.get(start[field] + i)))
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+/**
+ * MetricsListener is notified by an AddressBook of the searches, saves and
+ * reads it performs, with their duration and the amount of work they did. A
+ * listener is set with AddressBook.Builder.metrics(). Listeners are called on
+ * the thread performing the operation, so they should be quick and, if the
+ * address book is searched by several threads, thread-safe. <br>
+ * The default listener NONE ignores everything, and an address book using it
+ * does not even read the clock. InMemoryMetrics keeps the measurements in
+ * memory so that they can be scraped.
+ *
+ * @author Hiral Mehta
+ *
+ */
+public interface MetricsListener {
+
+    /**
+     * The operations reported to a listener.
+     */
+    public enum Operation {
+        SEARCH_FULL_NAME, SEARCH_FIRST_NAME, SEARCH_LAST_NAME, SEARCH_PHONE_NUMBER,
+        SEARCH_POSTAL_ADDRESS, SEARCH_EMAIL_ADDRESS, SEARCH_NOTE, SEARCH_SUBSTRING,
+        SEARCH_NAME_PREFIX, SEARCH_NAME_RANGE, SEARCH_QUERY,
+        SEARCH_PHONE_NORMALIZED, SEARCH_PHONE_SUFFIX, SEARCH_NAME_FUZZY,
+        SEARCH_SOUNDS_LIKE, SAVE, READ
+    };
+
+    /**
+     * A listener which ignores everything, used by default.
+     */
+    public static final MetricsListener NONE = new MetricsListener() {
+
+        @Override
+        public void searchCompleted(Operation operation, long nanos,
+                int scanned, int matched) {
+        }
+
+        @Override
+        public void saveCompleted(long nanos, long bytesWritten) {
+        }
+
+        @Override
+        public void readCompleted(long nanos, long bytesRead, int contacts) {
+        }
+
+        @Override
+        public void parseFailed() {
+        }
+    };
+
+    /**
+     * Called when a search has completed.
+     *
+     * @param operation
+     *            The kind of search, one of the SEARCH_ operations
+     * @param nanos
+     *            Duration of the search in nanoseconds
+     * @param scanned
+     *            Number of contacts the search looked at
+     * @param matched
+     *            Number of contacts the search returned
+     */
+    void searchCompleted(Operation operation, long nanos, int scanned,
+            int matched);
+
+    /**
+     * Called when the address book has been saved to a file.
+     *
+     * @param nanos
+     *            Duration of the save in nanoseconds
+     * @param bytesWritten
+     *            Size of the saved file
+     */
+    void saveCompleted(long nanos, long bytesWritten);
+
+    /**
+     * Called when a file has been read completely.
+     *
+     * @param nanos
+     *            Duration of the read in nanoseconds
+     * @param bytesRead
+     *            Size of the file
+     * @param contacts
+     *            Number of contacts read
+     */
+    void readCompleted(long nanos, long bytesRead, int contacts);
+
+    /**
+     * Called when reading a file failed because a contact in it could not be
+     * parsed.
+     */
+    void parseFailed();
+}
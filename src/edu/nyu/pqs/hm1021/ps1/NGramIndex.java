@@ -0,0 +1,136 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * This is a helper class which maintains an inverted index from the trigrams
+ * of a contact's searchable text to the contacts containing them. The
+ * searchable text is exactly the lower-cased string which a substring search
+ * matches against, separators included, so a query may span fields. The index
+ * only narrows down the candidates of a substring search; every candidate still
+ * has to be verified against the query. This is not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class NGramIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private Map<Long, ContactIdList> postings;
+
+    protected NGramIndex() {
+        postings = new HashMap<Long, ContactIdList>();
+    }
+
+    /*
+     * Creates a copy of the index which can be changed independently of it.
+     */
+    protected NGramIndex(NGramIndex other) {
+        postings = new HashMap<Long, ContactIdList>(other.postings);
+        for (Map.Entry<Long, ContactIdList> posting : postings.entrySet()) {
+            posting.setValue(new ContactIdList(posting.getValue()));
+        }
+    }
+
+    /*
+     * Returns the text a substring search matches against for the contact.
+     */
+    protected static String searchableText(ContactEntry contact) {
+        return ConversionHelper.buildStringFromContact(contact).toLowerCase();
+    }
+
+    protected void add(long id, ContactEntry contact) {
+        for (Long gram : grams(searchableText(contact))) {
+            ContactIdList posting = postings.get(gram);
+            if (posting == null) {
+                posting = new ContactIdList(1);
+                postings.put(gram, posting);
+            }
+            posting.add(id, contact);
+        }
+    }
+
+    /*
+     * Removes the contact with the given id from the postings of its
+     * trigrams.
+     */
+    protected void remove(long id, ContactEntry contact) {
+        for (Long gram : grams(searchableText(contact))) {
+            ContactIdList posting = postings.get(gram);
+            if (posting == null)
+                continue;
+            posting.remove(id);
+            if (posting.isEmpty())
+                postings.remove(gram);
+        }
+    }
+
+    /*
+     * Removes the contacts with the given ids from the postings of their
+     * trigrams, compacting every posting at most once.
+     */
+    protected void removeAll(long[] ids, ContactEntry[] contacts) {
+        Set<Long> touched = new HashSet<Long>();
+        for (int i = 0; i < ids.length; i++) {
+            for (Long gram : grams(searchableText(contacts[i]))) {
+                ContactIdList posting = postings.get(gram);
+                if (posting != null && posting.tombstone(ids[i]) != null)
+                    touched.add(gram);
+            }
+        }
+        for (Long gram : touched) {
+            ContactIdList posting = postings.get(gram);
+            if (posting.isEmpty())
+                postings.remove(gram);
+            else
+                posting.compactIfSparse();
+        }
+    }
+
+    /*
+     * Returns the contacts which may contain the already lower-cased query, in
+     * address book order, or null if the index cannot narrow the search down
+     * and the caller has to scan all contacts. The candidates are the posting
+     * list of the rarest trigram of the query, which must not be changed.
+     */
+    protected ContactIdList candidates(String query) {
+        Set<Long> queryGrams = grams(query);
+        if (queryGrams.isEmpty())
+            return null;
+
+        ContactIdList rarest = null;
+        for (Long gram : queryGrams) {
+            ContactIdList posting = postings.get(gram);
+            if (posting == null)
+                return new ContactIdList();
+            if (rarest == null || posting.size() < rarest.size())
+                rarest = posting;
+        }
+        return rarest;
+    }
+
+    /*
+     * Returns the distinct trigrams of the text, packed into a long. Trigrams
+     * made of field separator characters only occur in every contact and
+     * would not narrow down a search, hence they are not indexed.
+     */
+    private static Set<Long> grams(String text) {
+        Set<Long> grams = new HashSet<Long>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            boolean separatorsOnly = true;
+            long gram = 0;
+            for (int j = i; j < i + GRAM_LENGTH; j++) {
+                char c = text.charAt(j);
+                separatorsOnly &= (c == ' ' || c == ';' || c == '\n');
+                gram = (gram << Character.SIZE) | c;
+            }
+            if (!separatorsOnly)
+                grams.add(gram);
+        }
+        return grams;
+    }
+}
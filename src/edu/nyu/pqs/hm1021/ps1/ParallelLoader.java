@@ -0,0 +1,285 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * This is a helper class which reads an address book file in text or binary
+ * format on several threads. A text file is split into chunks which end right
+ * after a newline, a binary file into chunks of whole blocks, which may be
+ * compressed. The chunks are parsed independently and their contacts are
+ * appended in file order. This is not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class ParallelLoader {
+
+    private static final int CHUNK_SIZE = 8 << 20;
+
+    private static final int SCAN_BUFFER_SIZE = 1 << 12;
+
+    private static final int BINARY_HEADER_SIZE = BinaryFormat.MAGIC.length
+            + 16;
+
+    private ParallelLoader() {
+    }
+
+    /*
+     * Returns whether the file is a text file which can be split at any 0x0A
+     * byte. That holds when the byte only ever encodes '\n' in its charset.
+     * Binary formats start with a NUL byte, which a text file cannot.
+     */
+    protected static boolean canSplit(FileChannel channel, Charset charset)
+            throws IOException {
+        boolean newlineIsOneByte = charset.equals(StandardCharsets.UTF_8)
+                || (charset.newEncoder().maxBytesPerChar() == 1 && "\n"
+                        .getBytes(charset)[0] == '\n');
+        ByteBuffer first = ByteBuffer.allocate(1);
+        boolean binary = channel.read(first, 0) == 1 && first.get(0) == 0;
+        return newlineIsOneByte && !binary;
+    }
+
+    /*
+     * Returns whether the file is in binary format, which readBinary() can
+     * split at block boundaries.
+     */
+    protected static boolean isBinary(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(BinaryFormat.MAGIC.length);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic, magic.position()) < 0)
+                return false;
+        }
+        return Arrays.equals(magic.array(), BinaryFormat.MAGIC);
+    }
+
+    /*
+     * Reads all the contacts of the open binary file, using the given number
+     * of threads. Only the block headers are read on the calling thread, to
+     * find where the chunks start. The blocks of a chunk are read, checked
+     * and decompressed by the thread which parses them.
+     */
+    protected static List<ContactEntry> readBinary(final FileChannel channel,
+            int parallelism) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.position(BinaryFormat.MAGIC.length);
+        int version = header.getInt();
+        int flags = header.getInt();
+        long remaining = header.getLong();
+        final BlockCodec codec = BinaryFormat.codec(version, flags);
+        final boolean checksums = (flags & BinaryFormat.FLAG_CHECKSUMS) != 0;
+        final Interner interner = new Interner();
+        ByteBuffer blockHeader = ByteBuffer.allocate(8
+                + ((codec != null) ? 4 : 0) + (checksums ? 4 : 0));
+        long fileSize = channel.size();
+
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<List<ContactEntry>>> chunks = new ArrayList<Future<List<ContactEntry>>>();
+            long position = BINARY_HEADER_SIZE;
+            while (remaining > 0) {
+                final long start = position;
+                long contactsInChunk = 0;
+                // chunks hold about CHUNK_SIZE bytes once decompressed
+                long chunkBytes = 0;
+                while (remaining > 0 && chunkBytes < CHUNK_SIZE) {
+                    blockHeader.clear();
+                    readFully(channel, blockHeader, position);
+                    int contacts = blockHeader.getInt(0);
+                    int length = blockHeader.getInt(4);
+                    int blockLength = (codec != null) ? blockHeader.getInt(8)
+                            : length;
+                    position += blockHeader.capacity();
+                    // the chunk is allocated at once, so its blocks have to
+                    // fit in the file
+                    if (contacts <= 0
+                            || !BinaryContactReader.isValidLength(length)
+                            || !BinaryContactReader.isValidLength(blockLength)
+                            || length > fileSize - position)
+                        throw new IOException(
+                                "Corrupt address book block header");
+                    contactsInChunk += contacts;
+                    remaining -= contacts;
+                    chunkBytes += blockLength;
+                    position += length;
+                }
+                final long end = position;
+                final long contacts = contactsInChunk;
+                chunks.add(workers.submit(new Callable<List<ContactEntry>>() {
+                    @Override
+                    public List<ContactEntry> call() throws IOException {
+                        return readBlocks(channel, start, end, checksums,
+                                codec, contacts, interner);
+                    }
+                }));
+            }
+
+            List<ContactEntry> contacts = new ArrayList<ContactEntry>();
+            for (Future<List<ContactEntry>> chunk : chunks) {
+                contacts.addAll(get(chunk));
+            }
+            return contacts;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /*
+     * Reads all the contacts of the open text file, using the given number of
+     * threads. The file has to be one canSplit() accepts.
+     */
+    protected static List<ContactEntry> read(final FileChannel channel,
+            final Charset charset, int parallelism) throws IOException {
+        List<Long> boundaries = chunkBoundaries(channel);
+        final Interner interner = new Interner();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<List<ContactEntry>>> chunks = new ArrayList<Future<List<ContactEntry>>>();
+            for (int i = 0; i + 1 < boundaries.size(); i++) {
+                final long start = boundaries.get(i);
+                final long end = boundaries.get(i + 1);
+                chunks.add(workers.submit(new Callable<List<ContactEntry>>() {
+                    @Override
+                    public List<ContactEntry> call() throws IOException {
+                        return readChunk(channel, charset, start, end,
+                                interner);
+                    }
+                }));
+            }
+
+            List<ContactEntry> contacts = new ArrayList<ContactEntry>();
+            for (Future<List<ContactEntry>> chunk : chunks) {
+                contacts.addAll(get(chunk));
+            }
+            return contacts;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /*
+     * Returns the offsets at which chunks start, followed by the size of the
+     * file. Every chunk but the first starts right after a newline.
+     */
+    private static List<Long> chunkBoundaries(FileChannel channel)
+            throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = CHUNK_SIZE;
+        while (position < size) {
+            long lineStart = nextLineStart(channel, buffer, position);
+            if (lineStart >= size)
+                break;
+            boundaries.add(lineStart);
+            position = lineStart + CHUNK_SIZE;
+        }
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    /*
+     * Returns the offset following the first newline at or after position, or
+     * the size of the file if there is none.
+     */
+    private static long nextLineStart(FileChannel channel, ByteBuffer buffer,
+            long position) throws IOException {
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                return channel.size();
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+    }
+
+    private static List<ContactEntry> readChunk(FileChannel channel,
+            Charset charset, long start, long end, Interner interner)
+            throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        readFully(channel, ByteBuffer.wrap(bytes), start);
+
+        List<ContactEntry> contacts = new ArrayList<ContactEntry>();
+        BufferedReader lines = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(bytes), charset));
+        String line;
+        while ((line = lines.readLine()) != null) {
+            contacts.add(ConversionHelper.buildContact(line, interner));
+        }
+        return contacts;
+    }
+
+    private static List<ContactEntry> readBlocks(FileChannel channel,
+            long start, long end, boolean checksums, BlockCodec codec,
+            long count, Interner interner) throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        readFully(channel, ByteBuffer.wrap(bytes), start);
+
+        List<ContactEntry> contacts = new ArrayList<ContactEntry>();
+        ContactReader reader = new BinaryContactReader(
+                new ByteArrayInputStream(bytes), checksums, codec, count,
+                interner);
+        try {
+            while (reader.hasNext()) {
+                contacts.add(reader.next());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return contacts;
+    }
+
+    /*
+     * Fills the buffer with the bytes of the file at the given position.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Truncated address book file");
+        }
+    }
+
+    /*
+     * Waits for the chunk and rethrows whatever made parsing it fail.
+     */
+    private static List<ContactEntry> get(Future<List<ContactEntry>> chunk)
+            throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * This is a helper class which indexes phone numbers by their digits, so that
+ * numbers written in different formats, such as "555-1234" and "5551234", are
+ * found by the same lookup. A number is normalized to its digits and a leading
+ * '+', dropping the '-' separators; numbers with '*', '#', a '+' elsewhere,
+ * no digits or more than MAX_DIGITS digits cannot be normalized and are not
+ * indexed. This is not part of the API.
+ *
+ * Both lookups use a LongIndex. The exact key of a number is its digits read
+ * as a decimal number behind a leading 1, or 2 if the number starts with '+',
+ * so that leading zeros and the '+' are kept. The suffix key is the same for
+ * the last SUFFIX_DIGITS digits only, or all the digits of a shorter number.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class PhoneIndex {
+
+    protected static final int MAX_DIGITS = 18;
+    private static final int SUFFIX_DIGITS = 4;
+
+    private LongIndex exact;
+    private LongIndex suffixes;
+
+    protected PhoneIndex() {
+        exact = new LongIndex();
+        suffixes = new LongIndex();
+    }
+
+    /*
+     * Creates a copy of the index which can be changed independently of it.
+     */
+    protected PhoneIndex(PhoneIndex other) {
+        exact = new LongIndex(other.exact);
+        suffixes = new LongIndex(other.suffixes);
+    }
+
+    protected void add(long id, ContactEntry contact) {
+        String digits = digits(contact.getPhoneNumber());
+        if (digits == null)
+            return;
+        exact.add(exactKey(digits, hasPlus(contact.getPhoneNumber())), id,
+                contact);
+        suffixes.add(suffixKey(digits), id, contact);
+    }
+
+    protected void remove(long id, ContactEntry contact) {
+        String digits = digits(contact.getPhoneNumber());
+        if (digits == null)
+            return;
+        exact.remove(exactKey(digits, hasPlus(contact.getPhoneNumber())), id);
+        suffixes.remove(suffixKey(digits), id);
+    }
+
+    /*
+     * Removes the contacts with the given ids, compacting every bucket at most
+     * once.
+     */
+    protected void removeAll(long[] ids, ContactEntry[] contacts) {
+        long[] exactKeys = new long[ids.length];
+        long[] suffixKeys = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            String digits = digits(contacts[i].getPhoneNumber());
+            // a key of 0 is skipped by the index
+            if (digits != null) {
+                exactKeys[i] = exactKey(digits, hasPlus(contacts[i]
+                        .getPhoneNumber()));
+                suffixKeys[i] = suffixKey(digits);
+            }
+        }
+        exact.removeAll(exactKeys, ids, ids.length);
+        suffixes.removeAll(suffixKeys, ids, ids.length);
+    }
+
+    /*
+     * Returns a fresh list of the contacts whose number normalizes to the
+     * same digits and leading '+' as the given one, in address book order.
+     */
+    protected List<ContactEntry> exact(PhoneNumber number) {
+        String digits = digits(number);
+        if (digits == null)
+            return new ArrayList<ContactEntry>();
+        ContactIdList bucket = exact.bucket(exactKey(digits, hasPlus(number)));
+        if (bucket == null)
+            return new ArrayList<ContactEntry>();
+        return new ArrayList<ContactEntry>(bucket);
+    }
+
+    /*
+     * Returns a fresh list of the contacts whose normalized number ends with
+     * the given digits, in address book order. A suffix of SUFFIX_DIGITS or
+     * more digits is looked up under its last SUFFIX_DIGITS digits and
+     * verified against each contact of that key. A shorter suffix is looked up
+     * under every key ending with it, which all match.
+     */
+    protected List<ContactEntry> suffix(String suffix) {
+        if (suffix.length() >= SUFFIX_DIGITS) {
+            List<ContactEntry> output = new ArrayList<ContactEntry>();
+            ContactIdList bucket = suffixes.bucket(suffixKey(suffix));
+            if (bucket == null)
+                return output;
+            for (ContactEntry contact : bucket) {
+                if (digits(contact.getPhoneNumber()).endsWith(suffix))
+                    output.add(contact);
+            }
+            return output;
+        }
+
+        List<ContactIdList> buckets = new ArrayList<ContactIdList>();
+        long value = Long.parseLong(suffix);
+        long power = pow10(suffix.length());
+        for (int length = suffix.length(); length <= SUFFIX_DIGITS; length++) {
+            long marker = pow10(length);
+            for (long head = 0; head < marker / power; head++) {
+                ContactIdList bucket = suffixes.bucket(marker + head * power
+                        + value);
+                if (bucket != null)
+                    buckets.add(bucket);
+            }
+        }
+        return ContactIdList.merge(buckets);
+    }
+
+    /*
+     * Returns the digits of the number if it can be normalized, or null.
+     */
+    protected static String digits(PhoneNumber number) {
+        if (number == null)
+            return null;
+        String phone = number.getPhoneNum();
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9')
+                digits.append(c);
+            else if (c == '+' && i == 0)
+                continue;
+            else if (c != '-')
+                return null;
+        }
+        if (digits.length() == 0 || digits.length() > MAX_DIGITS)
+            return null;
+        return digits.toString();
+    }
+
+    protected static boolean isDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9')
+                return false;
+        }
+        return true;
+    }
+
+    protected static boolean hasPlus(PhoneNumber number) {
+        return number.getPhoneNum().startsWith("+");
+    }
+
+    /*
+     * Returns the key of the digits with a leading 1, or 2 for a '+'.
+     */
+    protected static long exactKey(String digits, boolean plus) {
+        return (plus ? 2 : 1) * pow10(digits.length()) + Long.parseLong(digits);
+    }
+
+    private static long suffixKey(String digits) {
+        String last = digits.substring(Math.max(0,
+                digits.length() - SUFFIX_DIGITS));
+        return pow10(last.length()) + Long.parseLong(last);
+    }
+
+    private static long pow10(int exponent) {
+        long power = 1;
+        for (int i = 0; i < exponent; i++) {
+            power *= 10;
+        }
+        return power;
+    }
+}
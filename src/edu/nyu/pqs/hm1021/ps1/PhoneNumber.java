@@ -13,7 +13,7 @@ package edu.nyu.pqs.hm1021.ps1;
  */
 public class PhoneNumber {
 
-    private String phoneNum;
+    private final String phoneNum;
 
     /**
      * Constructs an object of PhoneNumber. Imposes some restrictions on the
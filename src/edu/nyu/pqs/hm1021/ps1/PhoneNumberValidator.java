@@ -15,9 +15,22 @@ package edu.nyu.pqs.hm1021.ps1;
  */
 class PhoneNumberValidator {
 
-    private static final String regex = "^[-0-9*#+]+$|^$";
-
+    /*
+     * Accepts exactly the strings matched by the regular expression
+     *     ^[-0-9*#+]+$|^$
+     * but scans the characters in a single pass instead of using
+     * String.matches(), which compiles the expression on every call.
+     */
     protected static boolean isValid(String phoneNum) {
-        return (phoneNum.matches(regex));
+        for (int i = 0; i < phoneNum.length(); i++) {
+            if (!isPhoneChar(phoneNum.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isPhoneChar(char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '*' || c == '#'
+                || c == '+';
     }
 }
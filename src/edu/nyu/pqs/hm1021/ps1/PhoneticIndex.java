@@ -0,0 +1,136 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * This is a helper class which indexes the first, middle and last names of
+ * the contacts by their Soundex code, so that names which sound alike, such as
+ * "Tribiani" and "Tribbiani", are found by a single hash lookup. A contact is
+ * stored once under every distinct code of its names. This is not part of the
+ * API.
+ *
+ * The code is American Soundex: the first letter of the name followed by
+ * three digits for the consonants after it, B F P V as 1, C G J K Q S X Z as
+ * 2, D T as 3, L as 4, M N as 5 and R as 6, padded with zeros. Vowels and Y
+ * are dropped but separate consonants, H and W are dropped without separating
+ * them, and consonants with the same digit next to each other, the first
+ * letter included, count once. Only the letters A to Z are coded, in either
+ * case, other characters are skipped like H and W, and a name without any of
+ * these letters has no code.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class PhoneticIndex {
+
+    private static final int CODE_LENGTH = 4;
+
+    /*
+     * The digit of every letter from A to Z, '0' for the vowels and Y, and
+     * ' ' for H and W.
+     */
+    private static final String DIGITS = "0123012 02245501262301 202";
+
+    private HashIndex codes;
+
+    protected PhoneticIndex() {
+        codes = new HashIndex();
+    }
+
+    /*
+     * Creates a copy of the index which can be changed independently of it.
+     */
+    protected PhoneticIndex(PhoneticIndex other) {
+        codes = other.codes.copy();
+    }
+
+    protected void add(long id, ContactEntry contact) {
+        for (String code : codes(contact.getName())) {
+            codes.add(code, id, contact);
+        }
+    }
+
+    protected void remove(long id, ContactEntry contact) {
+        for (String code : codes(contact.getName())) {
+            codes.remove(code, id);
+        }
+    }
+
+    /*
+     * Removes the contacts with the given ids, compacting every code at most
+     * once.
+     */
+    protected void removeAll(long[] ids, ContactEntry[] contacts) {
+        String[] keys = new String[ids.length * 3];
+        long[] keyIds = new long[keys.length];
+        int count = 0;
+        for (int i = 0; i < ids.length; i++) {
+            for (String code : codes(contacts[i].getName())) {
+                keys[count] = code;
+                keyIds[count] = ids[i];
+                count++;
+            }
+        }
+        codes.removeAll(keys, keyIds, count);
+    }
+
+    /*
+     * Returns a fresh list of the contacts with a name which has the same
+     * code as the given one, in address book order.
+     */
+    protected List<ContactEntry> get(String name) {
+        return codes.get(soundex(name));
+    }
+
+    /*
+     * Returns the distinct codes of the first, middle and last name.
+     */
+    private static List<String> codes(ContactName name) {
+        List<String> codes = new ArrayList<String>(3);
+        if (name == null)
+            return codes;
+        String[] names = { name.getFirstName(), name.getMiddleName(),
+                name.getLastName() };
+        for (String n : names) {
+            String code = soundex(n);
+            if (code != null && !codes.contains(code))
+                codes.add(code);
+        }
+        return codes;
+    }
+
+    /*
+     * Returns the Soundex code of the name, or null if it has none.
+     */
+    protected static String soundex(String name) {
+        if (name == null)
+            return null;
+        char[] code = new char[CODE_LENGTH];
+        int length = 0;
+        // the digit of the last letter coded or dropped, but not skipped
+        char previous = 0;
+        for (int i = 0; i < name.length() && length < CODE_LENGTH; i++) {
+            char c = name.charAt(i);
+            if (c >= 'a' && c <= 'z')
+                c = (char) (c - 'a' + 'A');
+            if (c < 'A' || c > 'Z')
+                continue;
+            char digit = DIGITS.charAt(c - 'A');
+            if (length == 0) {
+                code[length++] = c;
+                previous = digit;
+            } else if (digit != ' ') {
+                if (digit != '0' && digit != previous)
+                    code[length++] = digit;
+                previous = digit;
+            }
+        }
+        if (length == 0)
+            return null;
+        while (length < CODE_LENGTH) {
+            code[length++] = '0';
+        }
+        return new String(code);
+    }
+}
@@ -206,11 +206,12 @@ public class PostalAddress {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + ((apt == null) ? 0 : apt.hashCode());
-        result = prime * result + ((city == null) ? 0 : city.hashCode());
-        result = prime * result + ((country == null) ? 0 : country.hashCode());
-        result = prime * result + ((state == null) ? 0 : state.hashCode());
-        result = prime * result + ((street == null) ? 0 : street.hashCode());
+        // case-insensitive, as equals() ignores case
+        result = prime * result + SearchKeys.hashIgnoreCase(apt);
+        result = prime * result + SearchKeys.hashIgnoreCase(city);
+        result = prime * result + SearchKeys.hashIgnoreCase(country);
+        result = prime * result + SearchKeys.hashIgnoreCase(state);
+        result = prime * result + SearchKeys.hashIgnoreCase(street);
         return result;
     }
 
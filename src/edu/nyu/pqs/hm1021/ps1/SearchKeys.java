@@ -0,0 +1,141 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+/*
+ * This is a helper class to derive the keys under which contacts are indexed
+ * by the address book. The keys are case-folded the same way
+ * String.equalsIgnoreCase() compares characters, so that two objects which are
+ * equal according to their equals() method always map to the same key. This is
+ * not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class SearchKeys {
+
+    /*
+     * Separates the fields of a composite key. Fields may hold any character,
+     * so the separator and the escape character are preceded by the escape
+     * character where they appear in a field, which keeps two keys equal only
+     * if all their fields are.
+     */
+    private static final char FIELD_SEPARATOR = '\u0000';
+    private static final char ESCAPE = '\u0001';
+
+    private SearchKeys() {
+    }
+
+    /*
+     * Folds a single character so that c1 and c2 fold to the same character if
+     * and only if String.equalsIgnoreCase() considers them equal.
+     */
+    protected static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /*
+     * Returns the case-folded form of the string. A null string is folded to
+     * the empty string. The input is returned as is if it is already folded.
+     */
+    protected static String fold(String s) {
+        if (s == null)
+            return "";
+        int length = s.length();
+        int i = 0;
+        while (i < length && fold(s.charAt(i)) == s.charAt(i))
+            i++;
+        if (i == length)
+            return s;
+
+        char[] folded = s.toCharArray();
+        for (; i < length; i++) {
+            folded[i] = fold(folded[i]);
+        }
+        return new String(folded);
+    }
+
+    /*
+     * Computes a hash code of the string which is consistent with
+     * String.equalsIgnoreCase(), without allocating the folded string.
+     */
+    protected static int hashIgnoreCase(String s) {
+        if (s == null)
+            return 0;
+        int hash = 0;
+        for (int i = 0; i < s.length(); i++) {
+            hash = 31 * hash + fold(s.charAt(i));
+        }
+        return hash;
+    }
+
+    protected static String nameKey(ContactName name) {
+        if (name == null)
+            return null;
+        return compositeKey(name.getFirstName(), name.getLastName(),
+                name.getMiddleName());
+    }
+
+    /*
+     * The zip code is left out of the key, as PostalAddress.equals() does not
+     * compare it.
+     */
+    protected static String postalAddressKey(PostalAddress address) {
+        if (address == null)
+            return null;
+        return compositeKey(address.getApt(), address.getStreet(),
+                address.getCity(), address.getState(), address.getCountry());
+    }
+
+    /*
+     * Returns the folded fields separated by FIELD_SEPARATOR, escaped as
+     * described there.
+     */
+    private static String compositeKey(String... fields) {
+        StringBuilder key = new StringBuilder(64);
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0)
+                key.append(FIELD_SEPARATOR);
+            String field = fields[i];
+            if (field == null)
+                continue;
+            for (int j = 0; j < field.length(); j++) {
+                char c = fold(field.charAt(j));
+                if (c == FIELD_SEPARATOR || c == ESCAPE)
+                    key.append(ESCAPE);
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    protected static String emailKey(EmailAddress email) {
+        if (email == null)
+            return null;
+        return fold(email.getEmailId());
+    }
+
+    protected static String emailDomainKey(EmailAddress email) {
+        if (email == null)
+            return null;
+        return fold(domainOf(email.getEmailId()));
+    }
+
+    /*
+     * Returns the part of an email address after its last '@', or the whole
+     * string if it has none, so that a domain is its own domain.
+     */
+    protected static String domainOf(String email) {
+        if (email == null)
+            return null;
+        return email.substring(email.lastIndexOf('@') + 1);
+    }
+
+    /*
+     * Phone numbers are compared case-sensitively, hence the number itself is
+     * the key.
+     */
+    protected static String phoneKey(PhoneNumber number) {
+        if (number == null)
+            return null;
+        return number.getPhoneNum();
+    }
+}
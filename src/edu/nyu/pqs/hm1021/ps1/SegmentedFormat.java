@@ -0,0 +1,372 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/*
+ * This is a helper class for the segmented layout written by
+ * AddressBook.saveSegments(), and holds the constants of the layout. This is
+ * not part of the API.
+ *
+ * The contacts are split by id into segments of SEGMENT_SIZE ids. A save
+ * writes the segments it has to into a new pack file, one after the other,
+ * each as a complete CHECKSUMMED_BINARY address book. The manifest lists, in
+ * id order, the segments which make up the address book with the pack, offset
+ * and length of each, so that the segments left unchanged by a save stay in
+ * the packs of earlier saves. Segments are small, so that a change rewrites
+ * little, and packs are never overwritten.
+ *
+ * The manifest is replaced atomically once the new pack is complete, so that
+ * the directory always holds one save or the next, and the packs it no longer
+ * refers to are deleted after it. It holds the magic bytes, the version of the
+ * format, the version of the save, SEGMENT_SIZE, the number of segments, the
+ * segment number, pack, offset, length and contact count of every segment, and
+ * the CRC-32 of all the preceding bytes.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class SegmentedFormat {
+
+    protected static final long SEGMENT_SIZE = 128;
+
+    private static final byte[] MAGIC = { 0, 'A', 'B', 'M' };
+    private static final int VERSION = 1;
+    private static final String MANIFEST = "manifest";
+    private static final String PACK_PREFIX = "pack-";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private SegmentedFormat() {
+    }
+
+    private static File packFile(File directory, long pack) {
+        return new File(directory, PACK_PREFIX + pack);
+    }
+
+    /*
+     * Returns the contacts of all the segments listed by the manifest, in id
+     * order, read from their packs.
+     */
+    protected static List<ContactEntry> read(File directory, Manifest manifest)
+            throws IOException {
+        List<ContactEntry> contacts = new ArrayList<ContactEntry>();
+        Interner interner = new Interner();
+        Map<Long, FileChannel> packs = new HashMap<Long, FileChannel>();
+        try {
+            byte[] bytes = new byte[0];
+            for (Segment segment : manifest.segments()) {
+                FileChannel channel = packs.get(segment.pack);
+                if (channel == null) {
+                    channel = FileChannel.open(packFile(directory,
+                            segment.pack).toPath(), StandardOpenOption.READ);
+                    packs.put(segment.pack, channel);
+                }
+                if (segment.offset > channel.size() - segment.length)
+                    throw new IOException("Truncated pack "
+                            + packFile(directory, segment.pack));
+                if (bytes.length < segment.length)
+                    bytes = new byte[segment.length];
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, segment.length);
+                long position = segment.offset;
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer, position);
+                    if (read < 0)
+                        throw new IOException("Truncated pack "
+                                + packFile(directory, segment.pack));
+                    position += read;
+                }
+
+                int before = contacts.size();
+                ContactReader reader = new BinaryContactReader(
+                        new ByteArrayInputStream(bytes, 0, segment.length),
+                        interner);
+                while (reader.hasNext()) {
+                    contacts.add(reader.next());
+                }
+                if (contacts.size() - before != segment.contacts)
+                    throw new IOException("Corrupt segment " + segment.segment);
+            }
+        } finally {
+            for (FileChannel channel : packs.values()) {
+                channel.close();
+            }
+        }
+        return contacts;
+    }
+
+    /*
+     * Deletes the packs of the directory which the manifest does not refer
+     * to.
+     */
+    protected static void deleteUnlisted(File directory, Manifest manifest)
+            throws IOException {
+        String[] names = directory.list();
+        if (names == null)
+            throw new IOException("Cannot list directory " + directory);
+        Set<String> listed = new HashSet<String>();
+        for (Segment segment : manifest.segments()) {
+            listed.add(PACK_PREFIX + segment.pack);
+        }
+        for (String name : names) {
+            if (name.startsWith(PACK_PREFIX) && !listed.contains(name))
+                Files.deleteIfExists(new File(directory, name).toPath());
+        }
+    }
+
+    /*
+     * Writes segments one after the other to a new pack. The pack file is
+     * only created with the first segment.
+     */
+    static class PackWriter {
+
+        private final File directory;
+        private final long pack;
+        private final ByteArrayOutputStream segment;
+        private FileChannel channel;
+        private OutputStream out;
+        private long position;
+
+        protected PackWriter(File directory, long pack) {
+            this.directory = directory;
+            this.pack = pack;
+            this.segment = new ByteArrayOutputStream(BUFFER_SIZE);
+        }
+
+        /*
+         * Appends the contacts of the segment to the pack and lists it in the
+         * manifest.
+         */
+        protected void write(long number, Collection<ContactEntry> contacts,
+                Manifest manifest) throws IOException {
+            if (channel == null) {
+                // a pack left by a save which did not complete is replaced
+                channel = FileChannel.open(packFile(directory, pack)
+                        .toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE);
+                out = new BufferedOutputStream(Channels.newOutputStream(
+                        channel), BUFFER_SIZE);
+            }
+            segment.reset();
+            BinaryFormat.write(segment, contacts, true, null);
+            segment.writeTo(out);
+            manifest.add(new Segment(number, pack, position, segment.size(),
+                    contacts.size()));
+            position += segment.size();
+        }
+
+        /*
+         * Forces the pack to the disk and closes it, and returns the number of
+         * bytes written.
+         */
+        protected long close() throws IOException {
+            if (channel == null)
+                return 0;
+            try {
+                out.flush();
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+            return position;
+        }
+    }
+
+    /*
+     * The segments of one save.
+     */
+    static class Manifest {
+
+        private final long version;
+        private final Map<Long, Segment> segments;
+
+        protected Manifest(long version) {
+            this.version = version;
+            this.segments = new TreeMap<Long, Segment>();
+        }
+
+        /*
+         * Reads the manifest of the directory, or returns null if there is
+         * none.
+         */
+        protected static Manifest read(File directory) throws IOException {
+            File file = new File(directory, MANIFEST);
+            if (!file.exists())
+                return null;
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            if (bytes.length < 4)
+                throw new IOException("Corrupt segment manifest");
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            if ((int) crc.getValue() != ByteBuffer.wrap(bytes,
+                    bytes.length - 4, 4).getInt())
+                throw new IOException("Segment manifest checksum mismatch");
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    bytes));
+            try {
+                byte[] magic = new byte[MAGIC.length];
+                in.readFully(magic);
+                if (!Arrays.equals(magic, MAGIC))
+                    throw new IOException("Not a segment manifest");
+                int formatVersion = in.readInt();
+                if (formatVersion != VERSION)
+                    throw new IOException("Unsupported manifest version "
+                            + formatVersion);
+                Manifest manifest = new Manifest(in.readLong());
+                if (in.readLong() != SEGMENT_SIZE)
+                    throw new IOException("Unsupported segment size");
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long number = in.readLong();
+                    long pack = in.readLong();
+                    long offset = in.readLong();
+                    int length = in.readInt();
+                    int contacts = in.readInt();
+                    if (offset < 0 || length < 0 || contacts < 0)
+                        throw new IOException("Corrupt segment manifest");
+                    manifest.add(new Segment(number, pack, offset, length,
+                            contacts));
+                }
+                return manifest;
+            } catch (EOFException e) {
+                throw new IOException("Truncated segment manifest", e);
+            }
+        }
+
+        protected long version() {
+            return version;
+        }
+
+        protected void add(Segment segment) {
+            segments.put(segment.segment, segment);
+        }
+
+        /*
+         * Returns the segment with the given number, or null if it is not
+         * listed.
+         */
+        protected Segment get(long segment) {
+            return segments.get(segment);
+        }
+
+        /*
+         * Returns the segments in id order.
+         */
+        protected Collection<Segment> segments() {
+            return segments.values();
+        }
+
+        /*
+         * Returns whether the packs of the segments hold more bytes of
+         * segments which are no longer listed than of listed ones.
+         */
+        protected boolean mostlyGarbage(File directory) {
+            long listed = 0;
+            Set<Long> packs = new HashSet<Long>();
+            for (Segment segment : segments.values()) {
+                listed += segment.length;
+                packs.add(segment.pack);
+            }
+            long total = 0;
+            for (long pack : packs) {
+                total += packFile(directory, pack).length();
+            }
+            return total > 2 * listed;
+        }
+
+        /*
+         * Replaces the manifest of the directory atomically, and returns the
+         * number of bytes written. The directory is forced once the manifest
+         * is renamed, so that the packs it no longer lists can be deleted
+         * without a crash bringing back a manifest which lists them.
+         */
+        protected long write(File directory) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                    32 + 32 * segments.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(version);
+            out.writeLong(SEGMENT_SIZE);
+            out.writeInt(segments.size());
+            for (Segment segment : segments.values()) {
+                out.writeLong(segment.segment);
+                out.writeLong(segment.pack);
+                out.writeLong(segment.offset);
+                out.writeInt(segment.length);
+                out.writeInt(segment.contacts);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+            out.flush();
+
+            Path target = new File(directory, MANIFEST).toPath();
+            Path temp = target.resolveSibling("." + MANIFEST + "."
+                    + System.nanoTime() + ".tmp");
+            try {
+                FileChannel channel = FileChannel.open(temp,
+                        StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                } finally {
+                    channel.close();
+                }
+                AddressBook.moveAtomically(temp, target);
+                AddressBook.forceDirectory(target.getParent());
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return bytes.size();
+        }
+    }
+
+    /*
+     * A segment listed by a manifest, and where it is stored.
+     */
+    static class Segment {
+
+        protected final long segment;
+        protected final long pack;
+        protected final long offset;
+        protected final int length;
+        protected final int contacts;
+
+        private Segment(long segment, long pack, long offset, int length,
+                int contacts) {
+            this.segment = segment;
+            this.pack = pack;
+            this.offset = offset;
+            this.length = length;
+            this.contacts = contacts;
+        }
+    }
+}
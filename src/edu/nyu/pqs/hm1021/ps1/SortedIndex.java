@@ -0,0 +1,87 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+ * This is a helper class which keeps the keys of an index in sorted order, so
+ * that besides exact-match searches the address book can answer prefix and
+ * range searches. Finding the first key takes logarithmic time, and every
+ * further key is the next entry of the tree, so a search takes O(log N + k)
+ * time for k matching contacts. This is not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class SortedIndex extends HashIndex {
+
+    private NavigableMap<String, ContactIdList> sorted;
+
+    protected SortedIndex() {
+        this(new TreeMap<String, ContactIdList>());
+    }
+
+    private SortedIndex(TreeMap<String, ContactIdList> buckets) {
+        super(buckets);
+        sorted = buckets;
+    }
+
+    private SortedIndex(SortedIndex other, TreeMap<String, ContactIdList> buckets) {
+        super(other, buckets);
+        sorted = buckets;
+    }
+
+    @Override
+    protected SortedIndex copy() {
+        return new SortedIndex(this, new TreeMap<String, ContactIdList>());
+    }
+
+    /*
+     * Returns the keys of the index in sorted order. The returned set must not
+     * be changed.
+     */
+    protected Set<String> keys() {
+        return sorted.keySet();
+    }
+
+    /*
+     * Returns a fresh list of the contacts whose key starts with the given
+     * prefix, in the order of their keys and, for equal keys, in address book
+     * order.
+     */
+    protected List<ContactEntry> prefix(String prefix) {
+        List<ContactEntry> output = new ArrayList<ContactEntry>();
+        for (Map.Entry<String, ContactIdList> bucket : sorted.tailMap(prefix,
+                true).entrySet()) {
+            if (!bucket.getKey().startsWith(prefix))
+                break;
+            output.addAll(bucket.getValue());
+        }
+        return output;
+    }
+
+    /*
+     * Returns a fresh list of the contacts whose key is at least from and less
+     * than to, in the same order as prefix(). A null bound leaves that end of
+     * the range open.
+     */
+    protected List<ContactEntry> range(String from, String to) {
+        List<ContactEntry> output = new ArrayList<ContactEntry>();
+        // an empty range, which subMap() would reject if from is above to
+        if (from != null && to != null && from.compareTo(to) >= 0)
+            return output;
+        NavigableMap<String, ContactIdList> keys = sorted;
+        if (from != null)
+            keys = keys.tailMap(from, true);
+        if (to != null)
+            keys = keys.headMap(to, false);
+        for (ContactIdList bucket : keys.values()) {
+            output.addAll(bucket);
+        }
+        return output;
+    }
+}
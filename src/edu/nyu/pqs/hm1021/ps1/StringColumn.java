@@ -0,0 +1,176 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+ * This is a helper class which stores a column of strings back to back in a
+ * single char array, with the end offset of every row in an int array, so that
+ * a column of a million values is two arrays instead of a million String
+ * objects. This is not part of the API.
+ *
+ * While the column holds only ASCII characters, a substring search runs over
+ * the char array as a whole, as one flat loop, and maps each hit back to its
+ * row by a binary search of the offsets. Other columns are searched row by
+ * row.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class StringColumn extends Column {
+
+    private char[] data;
+    private int length;
+    private int[] ends;
+    private int size;
+    private BitSet nulls;
+    private boolean ascii;
+
+    protected StringColumn() {
+        data = new char[64];
+        ends = new int[16];
+        nulls = new BitSet();
+        ascii = true;
+    }
+
+    @Override
+    protected void add(String value) {
+        if (size == ends.length)
+            ends = Arrays.copyOf(ends, size * 2);
+        if (value == null) {
+            nulls.set(size);
+        } else {
+            if (length + value.length() > data.length)
+                data = Arrays.copyOf(data,
+                        Math.max(data.length * 2, length + value.length()));
+            value.getChars(0, value.length(), data, length);
+            length += value.length();
+            ascii = ascii && isAscii(value);
+        }
+        ends[size++] = length;
+    }
+
+    @Override
+    protected String get(int row) {
+        if (nulls.get(row))
+            return null;
+        int start = start(row);
+        return new String(data, start, ends[row] - start);
+    }
+
+    /*
+     * Clears the rows whose value is not equal to the given one. A null value
+     * equals nothing.
+     */
+    protected void retainExactly(String value, BitSet rows) {
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows
+                .nextSetBit(row + 1)) {
+            if (value == null || nulls.get(row) || !regionEquals(row, value))
+                rows.clear(row);
+        }
+    }
+
+    /*
+     * A null value, in the column or as the given one, is compared as the
+     * empty string, like the keys of the AddressBook indexes.
+     */
+    @Override
+    protected void retainIgnoreCase(String value, BitSet rows) {
+        String v = (value == null) ? "" : value;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows
+                .nextSetBit(row + 1)) {
+            int start = start(row);
+            boolean equal = ends[row] - start == v.length();
+            for (int i = 0; i < v.length() && equal; i++) {
+                char c = data[start + i];
+                char d = v.charAt(i);
+                equal = c == d || SearchKeys.fold(c) == SearchKeys.fold(d);
+            }
+            if (!equal)
+                rows.clear(row);
+        }
+    }
+
+    @Override
+    protected void findSubstring(String query, BitSet candidates,
+            BitSet matches) {
+        if (!ascii || !isAscii(query) || !asciiFolds()) {
+            for (int row = candidates.nextSetBit(0); row >= 0; row = candidates
+                    .nextSetBit(row + 1)) {
+                if (containsLowerCase(get(row), query))
+                    matches.set(row);
+            }
+            return;
+        }
+
+        if ("null".contains(query)) {
+            BitSet nullMatches = (BitSet) nulls.clone();
+            nullMatches.and(candidates);
+            matches.or(nullMatches);
+        }
+        if (query.isEmpty()) {
+            matches.or(candidates);
+            return;
+        }
+        char first = query.charAt(0);
+        int last = length - query.length();
+        int position = 0;
+        while (position <= last) {
+            if (toLowerAscii(data[position]) != first
+                    || !regionMatchesLowerCase(position, query)) {
+                position++;
+                continue;
+            }
+            int row = rowAt(position);
+            if (position + query.length() <= ends[row]) {
+                if (candidates.get(row))
+                    matches.set(row);
+                // the row matches, its other hits do not matter
+                position = ends[row];
+            } else {
+                position++;
+            }
+        }
+    }
+
+    private int start(int row) {
+        return (row == 0) ? 0 : ends[row - 1];
+    }
+
+    /*
+     * Returns the row holding the character at the position, the first one
+     * ending after it. Empty rows end where the next row starts, and are
+     * never returned.
+     */
+    private int rowAt(int position) {
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] > position)
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        return low;
+    }
+
+    private boolean regionEquals(int row, String value) {
+        int start = start(row);
+        if (ends[row] - start != value.length())
+            return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (data[start + i] != value.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean regionMatchesLowerCase(int position, String query) {
+        for (int i = 1; i < query.length(); i++) {
+            if (toLowerAscii(data[position + i]) != query.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
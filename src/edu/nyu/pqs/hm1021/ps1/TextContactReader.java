@@ -0,0 +1,54 @@
+package edu.nyu.pqs.hm1021.ps1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+
+/*
+ * This is a helper class which reads the contacts of an address book file in
+ * text format, one line at a time. This is not part of the API.
+ *
+ * @author Hiral Mehta
+ *
+ */
+class TextContactReader extends ContactReader {
+
+    private BufferedReader in;
+    private String nextLine;
+
+    protected TextContactReader(InputStream in, Charset charset) {
+        super(new Interner());
+        this.in = new BufferedReader(new InputStreamReader(in, charset),
+                BUFFER_SIZE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextLine == null) {
+            try {
+                nextLine = in.readLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return nextLine != null;
+    }
+
+    @Override
+    public ContactEntry next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        String line = nextLine;
+        nextLine = null;
+        return ConversionHelper.buildContact(line, interner);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}